@@ -0,0 +1,188 @@
+package war;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a writer of whole files that never blocks the threads asking for the writes. Every file is written to a
+ * temporary file with an {@link AsynchronousFileChannel}, forced to disk and moved over the old file, driven by
+ * completion handlers on a small pool of threads owned by the writer instead of a thread per write. The folder of the
+ * file is created if there is none, and the write and rename phases are recorded as {@link StorageEvent}s.
+ * <p>
+ * At most so many writes are in progress at once; further writes wait in a queue and start as others complete,
+ * so any number of games can save at the same time without flooding the disk.
+ *
+ * @author Komron Valijonov
+ */
+public class AsyncFileWriter {
+    public static final int DEFAULT_MAX_OUTSTANDING = 64;
+    public static final int DEFAULT_THREADS = 2;
+
+    private final int maxOutstanding;
+    private final Semaphore permits;
+    private final Queue<Write> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong temps = new AtomicLong();  // numbers temporary files apart
+    private final ExecutorService executor;  // opens the files and runs the completion handlers
+
+    /**
+     * Creates a writer.
+     *
+     * @param maxOutstanding most writes in progress at once
+     * @param threads        number of threads to run the completion handlers on
+     */
+    public AsyncFileWriter(int maxOutstanding, int threads) {
+        if (maxOutstanding < 1)
+            throw new IllegalArgumentException("At least one write must be allowed");
+        this.maxOutstanding = maxOutstanding;
+        this.permits = new Semaphore(maxOutstanding);
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "war-storage");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the writer shared by every storage that was not given its own, allowing
+     * {@value #DEFAULT_MAX_OUTSTANDING} writes at once on {@value #DEFAULT_THREADS} threads.
+     *
+     * @return shared writer
+     */
+    public static AsyncFileWriter getDefault() {
+        return Holder.DEFAULT;
+    }
+
+    /**
+     * Queues a file to be written. The contents must not be changed until the write completes.
+     *
+     * @param path of the file, replaced as a whole once the new contents are on disk
+     * @param data contents of the file
+     * @return completes once the file is replaced, or exceptionally if writing fails
+     */
+    public CompletableFuture<Void> write(Path path, ByteBuffer data) {
+        Path temp = path.resolveSibling(path.getFileName() + "." + temps.getAndIncrement() + ".tmp");
+        Write write = new Write(path, temp, data);
+        queue.add(write);
+        drain();
+        return write.result;
+    }
+
+    /**
+     * Returns the number of writes queued or in progress.
+     *
+     * @return outstanding writes
+     */
+    public int getOutstanding() {
+        return queue.size() + maxOutstanding - permits.availablePermits();
+    }
+
+    /**
+     * Starts queued writes while there are permits. Called after queueing and after every write completes, so a
+     * write queued just as another one completed is never left behind.
+     */
+    private void drain() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            Write write = queue.poll();
+            if (write == null) {
+                permits.release();
+                continue;
+            }
+            executor.execute(write::start);
+        }
+    }
+
+    private void done() {
+        permits.release();
+        drain();
+    }
+
+    /**
+     * A file being written, which is its own completion handler.
+     */
+    private final class Write implements CompletionHandler<Integer, Void> {
+        private static final Set<StandardOpenOption> OPTIONS = EnumSet.of(StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        private final Path path, temp;
+        private final ByteBuffer data;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private AsynchronousFileChannel channel;
+        private long position;
+        private StorageEvent event;
+
+        Write(Path path, Path temp, ByteBuffer data) {
+            this.path = path;
+            this.temp = temp;
+            this.data = data;
+        }
+
+        void start() {
+            try {
+                event = StorageEvent.start("write");
+                Path folder = path.toAbsolutePath().getParent();
+                if (folder != null)
+                    Files.createDirectories(folder);
+                channel = AsynchronousFileChannel.open(temp, OPTIONS, executor);
+                channel.write(data, position, null, this);
+            } catch (IOException | RuntimeException e) {
+                failed(e, null);
+            }
+        }
+
+        @Override
+        public void completed(Integer written, Void attachment) {
+            position += written;
+            try {
+                if (data.hasRemaining()) {
+                    channel.write(data, position, null, this);
+                    return;
+                }
+                // forcing has no asynchronous form, it takes a moment of the pool thread that completed the write
+                channel.force(true);
+                channel.close();
+                event.end(position);
+                event = StorageEvent.start("rename");
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                event.end(position);
+            } catch (IOException | RuntimeException e) {
+                failed(e, null);
+                return;
+            }
+            done();
+            result.complete(null);
+        }
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            try {
+                if (channel != null)
+                    channel.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // the write failed already
+            }
+            done();
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static final class Holder {
+        private static final AsyncFileWriter DEFAULT = new AsyncFileWriter(DEFAULT_MAX_OUTSTANDING, DEFAULT_THREADS);
+    }
+}
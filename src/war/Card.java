@@ -21,6 +21,8 @@ public class Card implements Comparable<Card>, Serializable {
 
     public static final int STANDARD_DECK_SIZE = 52;
 
+    private static final Suit[] SUITS = Suit.values();
+
     protected final int rank;
     protected final Suit suit;
     protected boolean faceUp = true;
@@ -52,6 +54,38 @@ public class Card implements Comparable<Card>, Serializable {
         return cards;
     }
 
+    /**
+     * Creates the card with the given ordinal (see {@link #ordinal()}).
+     *
+     * @param ordinal of card (between 0 and 51 (inclusive))
+     * @return new card
+     */
+    public static Card fromOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= STANDARD_DECK_SIZE)
+            throw new IllegalArgumentException("Card ordinal must be between 0 and 51");
+        return new Card(rankOf(ordinal), SUITS[ordinal % SUITS.length]);
+    }
+
+    /**
+     * Returns the rank of the card with the given ordinal.
+     *
+     * @param ordinal of card
+     * @return rank of card
+     */
+    public static int rankOf(int ordinal) {
+        return ordinal / SUITS.length + RANK_FIRST;
+    }
+
+    /**
+     * Returns this card's position in a standard deck as returned by {@link #all()}.
+     * Ordinals are ordered by rank first, so comparing the ranks of two ordinals only needs {@link #rankOf(int)}.
+     *
+     * @return ordinal of card (between 0 and 51 (inclusive))
+     */
+    public int ordinal() {
+        return (rank - RANK_FIRST) * SUITS.length + suit.ordinal();
+    }
+
     /**
      * Returns this card's rank.
      *
@@ -0,0 +1,22 @@
+package war;
+
+import java.io.IOException;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Thrown when a save file exists but does not hold a valid game (wrong format, failed checksum, impossible state).
+ *
+ * @author Komron Valijonov
+ */
+public class CorruptSaveException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param message describing what is wrong with the file
+     */
+    public CorruptSaveException(String message) {
+        super(message);
+    }
+}
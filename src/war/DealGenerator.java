@@ -0,0 +1,186 @@
+package war;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a source of shuffled decks, dealt as card ordinals (see {@link Card#ordinal()}) straight into byte
+ * arrays. Shuffling is the Fisher-Yates shuffle ({@link #shuffle}) on the array, without building or boxing any
+ * cards, and the random numbers come from any {@link RandomGenerator} algorithm, {@link #DEFAULT_ALGORITHM} unless
+ * another one is chosen. The simulations shuffle with the same method (see {@link war.sim.Deals}).
+ * <p>
+ * A deal is {@link Card#STANDARD_DECK_SIZE} ordinals; player 1 gets the first half and player 2 the second half
+ * (see {@link HeadlessGame#deal}). Deals can also be written as text, one letter per card (see {@link #encode}).
+ *
+ * @author Komron Valijonov
+ */
+public final class DealGenerator {
+    public static final String DEFAULT_ALGORITHM = "L64X128MixRandom";
+    private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";  // by ordinal
+
+    private final RandomGenerator random;
+    private final byte[] deck = new byte[Card.STANDARD_DECK_SIZE];  // the last deal, shuffled again for the next
+
+    /**
+     * Creates a generator using the default algorithm with a random seed.
+     */
+    public DealGenerator() {
+        this(RandomGeneratorFactory.of(DEFAULT_ALGORITHM).create());
+    }
+
+    /**
+     * Creates a generator using the given algorithm and seed, which always deals the same decks.
+     *
+     * @param algorithm name of a {@link RandomGenerator} algorithm, such as "Xoroshiro128PlusPlus"
+     * @param seed      for the generator
+     * @throws IllegalArgumentException if the algorithm is not available
+     */
+    public DealGenerator(String algorithm, long seed) {
+        this(RandomGeneratorFactory.of(algorithm).create(seed));
+    }
+
+    /**
+     * Creates a generator using the given random numbers.
+     *
+     * @param random source of randomness, only used by this generator
+     */
+    public DealGenerator(RandomGenerator random) {
+        this.random = random;
+        reset(deck);
+    }
+
+    /**
+     * Deals a shuffled deck.
+     *
+     * @param dst    to write the {@link Card#STANDARD_DECK_SIZE} ordinals to
+     * @param offset of the first ordinal
+     */
+    public void next(byte[] dst, int offset) {
+        // shuffling the last deal again is as random as shuffling a sorted deck
+        shuffle(deck, random);
+        System.arraycopy(deck, 0, dst, offset, deck.length);
+    }
+
+    /**
+     * Deals several shuffled decks, one after the other.
+     *
+     * @param dst    to write the ordinals to, {@link Card#STANDARD_DECK_SIZE} per deal
+     * @param offset of the first ordinal
+     * @param count  number of deals
+     */
+    public void next(byte[] dst, int offset, int count) {
+        if (offset < 0 || count < 0 || offset + (long) count * deck.length > dst.length)
+            throw new IndexOutOfBoundsException("Buffer too small for " + count + " deals");
+        for (int d = 0; d < count; d++) {
+            shuffle(deck, random);
+            System.arraycopy(deck, 0, dst, offset + d * deck.length, deck.length);
+        }
+    }
+
+    /**
+     * Puts the ordinals of a full deck into the array in order.
+     *
+     * @param deck of {@link Card#STANDARD_DECK_SIZE} ordinals
+     */
+    public static void reset(byte[] deck) {
+        for (int i = 0; i < Card.STANDARD_DECK_SIZE; i++)
+            deck[i] = (byte) i;
+    }
+
+    /**
+     * Shuffles a deck (Fisher-Yates). This is the one shuffle of the program: deals of the game use it with the
+     * generator they were given and simulations with the {@link java.util.SplittableRandom} of a game.
+     *
+     * @param deck   of ordinals
+     * @param random source of randomness
+     */
+    public static void shuffle(byte[] deck, RandomGenerator random) {
+        for (int i = deck.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            byte card = deck[i];
+            deck[i] = deck[j];
+            deck[j] = card;
+        }
+    }
+
+    /**
+     * Writes a deal as {@link Card#STANDARD_DECK_SIZE} letters, A to Z and a to z being the ordinals 0 to 51.
+     *
+     * @param deal   ordinals
+     * @param offset of the first ordinal
+     * @return deal as text
+     */
+    public static String encode(byte[] deal, int offset) {
+        char[] text = new char[Card.STANDARD_DECK_SIZE];
+        for (int i = 0; i < text.length; i++)
+            text[i] = LETTERS.charAt(deal[offset + i]);
+        return new String(text);
+    }
+
+    /**
+     * Reads a deal written by {@link #encode}.
+     *
+     * @param text   deal as text
+     * @param dst    to write the ordinals to
+     * @param offset of the first ordinal
+     * @throws IllegalArgumentException if the text is not a full deck with every card once
+     */
+    public static void decode(String text, byte[] dst, int offset) {
+        if (text.length() != Card.STANDARD_DECK_SIZE)
+            throw new IllegalArgumentException("A deal has " + Card.STANDARD_DECK_SIZE + " cards: " + text);
+        long seen = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int ordinal = LETTERS.indexOf(text.charAt(i));
+            if (ordinal < 0 || (seen & 1L << ordinal) != 0)
+                throw new IllegalArgumentException("Invalid or repeated card '" + text.charAt(i) + "' in deal: " + text);
+            seen |= 1L << ordinal;
+            dst[offset + i] = (byte) ordinal;
+        }
+    }
+
+    /**
+     * Measures how many deals per second each algorithm makes, compared with shuffling a list of cards.
+     * Usage: DealGenerator [deals] [algorithm...]
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int deals = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        String[] algorithms = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length)
+                : new String[]{"L64X128MixRandom", "Xoroshiro128PlusPlus", "L32X64MixRandom", "SplittableRandom",
+                "Random"};
+        int batch = 1024;
+        byte[] buffer = new byte[batch * Card.STANDARD_DECK_SIZE];
+
+        for (String algorithm : algorithms) {
+            DealGenerator generator = new DealGenerator(algorithm, 42);
+            long checksum = 0;
+            for (int round = 0; round < 2; round++) {
+                // the first round warms up
+                long start = System.nanoTime();
+                for (int d = 0; d < deals; d += batch) {
+                    generator.next(buffer, 0, batch);
+                    checksum += buffer[0];
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                if (round == 1)
+                    System.out.printf("%-22s %,14.0f deals/s%n", algorithm, deals / seconds);
+            }
+            if (checksum == 42)
+                System.out.println();  // keeps the deals from being optimized away
+        }
+
+        // what WarModel used to do for every game
+        List<Card> cards = Card.all();
+        int listDeals = deals / 10;
+        long start = System.nanoTime();
+        for (int d = 0; d < listDeals; d++)
+            Collections.shuffle(cards);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-22s %,14.0f deals/s%n", "Collections.shuffle", listDeals / seconds);
+    }
+}
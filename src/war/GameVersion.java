@@ -0,0 +1,63 @@
+package war;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the state of a game after one action of the {@link WarModel}. Versions are immutable and share their
+ * decks with the versions before them, so recording one costs O(1) no matter how long the game has been going.
+ * Following {@link #getPrevious()} walks back to the start of the game.
+ *
+ * @author Komron Valijonov
+ */
+final class GameVersion {
+    private final GameVersion previous;
+    private final int step;  // actions since the start of the game
+    private final PersistentDeck deck1, deck2, pool;
+    private final Card drawn1, drawn2;
+    private final boolean gameOver, war, mobilizing;
+
+    GameVersion(GameVersion previous, PersistentDeck deck1, PersistentDeck deck2, PersistentDeck pool,
+                Card drawn1, Card drawn2, boolean gameOver, boolean war, boolean mobilizing) {
+        this.previous = previous;
+        this.step = previous == null ? 0 : previous.step + 1;
+        this.deck1 = deck1;
+        this.deck2 = deck2;
+        this.pool = pool;
+        this.drawn1 = drawn1;
+        this.drawn2 = drawn2;
+        this.gameOver = gameOver;
+        this.war = war;
+        this.mobilizing = mobilizing;
+    }
+
+    GameVersion getPrevious() {
+        return previous;
+    }
+
+    int getStep() {
+        return step;
+    }
+
+    PersistentDeck getDeck(boolean p1) {
+        return p1 ? deck1 : deck2;
+    }
+
+    PersistentDeck getPool() {
+        return pool;
+    }
+
+    Card getDrawnCard(boolean p1) {
+        return p1 ? drawn1 : drawn2;
+    }
+
+    boolean isGameOver() {
+        return gameOver;
+    }
+
+    boolean isWar() {
+        return war;
+    }
+
+    boolean isMobilizing() {
+        return mobilizing;
+    }
+}
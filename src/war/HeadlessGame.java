@@ -0,0 +1,388 @@
+package war;
+
+import java.util.SplittableRandom;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a game of "War" played by the same rules as {@link WarModel}, without a view, players or
+ * {@link Card} objects. Cards are their ordinals (see {@link Card#ordinal()}) stored in fixed size arrays, so playing
+ * does not allocate and a game can be copied to and from a small array of bytes (see {@link #writeState}).
+ * <p>
+ * One {@link #step()} is one action of the model, the same as pressing the action button in the GUI:
+ * draw a card each ({@link WarModel#nextTurn()}), or mobilize ({@link WarModel#prepareForWar()}) after a tie.
+ *
+ * @author Komron Valijonov
+ */
+public final class HeadlessGame {
+    // what a step did
+    public static final int NONE = 0;  // nothing, the game is over
+    public static final int TURN = 1;  // cards were drawn and somebody won the pool
+    public static final int WAR = 2;  // cards were drawn and tied
+    public static final int MOBILIZE = 3;  // cards were drawn face down
+    public static final int GAME_OVER = 4;  // a player ran out of cards
+
+    public static final int NO_CARD = -1;
+    public static final int STATE_SIZE = Card.STANDARD_DECK_SIZE + 6;  // bytes written by writeState
+    public static final int FLAG_WAR = 1, FLAG_MOBILIZING = 2, FLAG_GAME_OVER = 4;  // bits of the state's flags byte
+
+    private static final int CAPACITY = 64, MASK = CAPACITY - 1;  // decks are ring buffers
+
+    private final byte[] deck1 = new byte[CAPACITY], deck2 = new byte[CAPACITY];
+    private final byte[] pool = new byte[Card.STANDARD_DECK_SIZE];
+    private int head1, size1, head2, size2, poolSize;
+    private boolean war, mobilizing, gameOver;
+    private int winner;  // 1 or 2 once the game is over, the winner of the last turn before that
+    private int drawn1 = NO_CARD, drawn2 = NO_CARD;  // last cards drawn face up
+
+    // statistics since the last deal
+    private long steps, turns, wars;
+    private int warDepth, maxWarDepth;
+
+    private SplittableRandom pickup;  // shuffles the pool before the winner picks it up, null for the model's order
+
+    /**
+     * Starts a new game. Player 1 gets the first half of the cards and player 2 the second half, the first card of
+     * each half being the top of the deck (like {@link WarModel#newGame()}).
+     *
+     * @param ordinals of a full deck of cards
+     * @param offset   of the first card
+     */
+    public void deal(byte[] ordinals, int offset) {
+        int half = Card.STANDARD_DECK_SIZE / 2;
+        System.arraycopy(ordinals, offset, deck1, 0, half);
+        System.arraycopy(ordinals, offset + half, deck2, 0, half);
+        head1 = head2 = 0;
+        size1 = size2 = half;
+        poolSize = 0;
+        war = mobilizing = gameOver = false;
+        winner = 0;
+        drawn1 = drawn2 = NO_CARD;
+        steps = turns = wars = 0;
+        warDepth = maxWarDepth = 0;
+    }
+
+    /**
+     * Starts the game at the given version of a {@link WarModel} game.
+     */
+    void load(GameVersion version) {
+        PersistentDeck d1 = version.getDeck(true), d2 = version.getDeck(false), p = version.getPool();
+        for (int i = 0; i < d1.size(); i++)
+            deck1[i] = (byte) d1.get(i).ordinal();
+        for (int i = 0; i < d2.size(); i++)
+            deck2[i] = (byte) d2.get(i).ordinal();
+        for (int i = 0; i < p.size(); i++)
+            pool[i] = (byte) p.get(i).ordinal();
+        head1 = head2 = 0;
+        size1 = d1.size();
+        size2 = d2.size();
+        poolSize = p.size();
+        war = version.isWar();
+        mobilizing = version.isMobilizing();
+        gameOver = version.isGameOver();
+        winner = gameOver ? (size1 == 0 ? 2 : 1) : 0;
+        Card c1 = version.getDrawnCard(true), c2 = version.getDrawnCard(false);
+        drawn1 = c1 == null ? NO_CARD : c1.ordinal();
+        drawn2 = c2 == null ? NO_CARD : c2.ordinal();
+        steps = turns = wars = 0;
+        warDepth = maxWarDepth = 0;
+    }
+
+    /**
+     * Makes the winner of a turn pick up the pool in random order instead of the order the cards were played in.
+     * This is not how {@link WarModel} plays, but it keeps games from cycling forever, which is useful for rollouts.
+     *
+     * @param random to shuffle the pool with, or null to pick it up in order
+     */
+    public void setRandomPickup(SplittableRandom random) {
+        this.pickup = random;
+    }
+
+    /**
+     * Performs the next action: mobilize if the last turn was a tie, draw otherwise.
+     *
+     * @return what happened ({@link #TURN}, {@link #WAR}, {@link #MOBILIZE}, {@link #GAME_OVER} or {@link #NONE})
+     */
+    public int step() {
+        if (gameOver)
+            return NONE;
+        steps++;
+        return mobilizing ? prepareForWar() : nextTurn();
+    }
+
+    /**
+     * Plays until the game is over or the step limit is reached.
+     *
+     * @param maxSteps most steps to play
+     * @return winner (1 or 2), or 0 if the game did not end
+     */
+    public int playOut(long maxSteps) {
+        for (long i = 0; i < maxSteps && !gameOver; i++)
+            step();
+        return gameOver ? winner : 0;
+    }
+
+    private int nextTurn() {
+        if (!gameContinues())
+            return GAME_OVER;
+
+        // draw cards from each player and add them to the pool
+        int card1 = deck1[head1];
+        head1 = (head1 + 1) & MASK;
+        size1--;
+        int card2 = deck2[head2];
+        head2 = (head2 + 1) & MASK;
+        size2--;
+        pool[poolSize++] = (byte) card1;
+        pool[poolSize++] = (byte) card2;
+        drawn1 = card1;
+        drawn2 = card2;
+        turns++;
+
+        // ordinals are ordered by rank, so comparing ranks only needs the ordinals
+        int rank1 = Card.rankOf(card1), rank2 = Card.rankOf(card2);
+        if (rank1 == rank2) {
+            if (!gameContinues())
+                return GAME_OVER;
+            war = mobilizing = true;
+            wars++;
+            if (++warDepth > maxWarDepth)
+                maxWarDepth = warDepth;
+            return WAR;
+        }
+
+        // award pool to winner and clear it
+        winner = rank1 > rank2 ? 1 : 2;
+        if (pickup != null) {
+            for (int i = poolSize - 1; i > 0; i--) {
+                int j = pickup.nextInt(i + 1);
+                byte card = pool[i];
+                pool[i] = pool[j];
+                pool[j] = card;
+            }
+        }
+        if (winner == 1) {
+            for (int i = 0; i < poolSize; i++)
+                deck1[(head1 + size1++) & MASK] = pool[i];
+        } else {
+            for (int i = 0; i < poolSize; i++)
+                deck2[(head2 + size2++) & MASK] = pool[i];
+        }
+        poolSize = 0;
+        war = false;
+        warDepth = 0;
+        return TURN;
+    }
+
+    private int prepareForWar() {
+        if (!gameContinues())
+            return GAME_OVER;
+
+        // each player puts one card face down into the pool
+        pool[poolSize++] = deck1[head1];
+        head1 = (head1 + 1) & MASK;
+        size1--;
+        pool[poolSize++] = deck2[head2];
+        head2 = (head2 + 1) & MASK;
+        size2--;
+        mobilizing = false;
+        return MOBILIZE;
+    }
+
+    private boolean gameContinues() {
+        if (size1 == 0) {
+            gameOver = true;
+            winner = 2;
+        } else if (size2 == 0) {
+            gameOver = true;
+            winner = 1;
+        }
+        return !gameOver;
+    }
+
+    /**
+     * Returns true if a player ran out of cards.
+     *
+     * @return true if game is over
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Returns true if war is currently in progress.
+     *
+     * @return true if wartime
+     */
+    public boolean isWar() {
+        return war;
+    }
+
+    /**
+     * Returns true if the next step mobilizes.
+     *
+     * @return true after a tie
+     */
+    public boolean isMobilizing() {
+        return mobilizing;
+    }
+
+    /**
+     * Returns the winner of the game once it is over, or of the last turn before that.
+     *
+     * @return 1, 2 or 0 if nobody won anything yet
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Returns the number of cards player 1 or 2 has left.
+     *
+     * @param p1 true for player 1
+     * @return cards left
+     */
+    public int getCardsLeft(boolean p1) {
+        return p1 ? size1 : size2;
+    }
+
+    /**
+     * Returns the ordinal of a card in player 1 or 2's deck, 0 being the top.
+     *
+     * @param p1    true for player 1
+     * @param index of card
+     * @return card ordinal
+     */
+    public int getCard(boolean p1, int index) {
+        return p1 ? deck1[(head1 + index) & MASK] : deck2[(head2 + index) & MASK];
+    }
+
+    /**
+     * Returns the number of cards in the pool.
+     *
+     * @return pool size
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Returns the ordinal of a card in the pool, in the order they were added.
+     *
+     * @param index of card
+     * @return card ordinal
+     */
+    public int getPoolCard(int index) {
+        return pool[index];
+    }
+
+    /**
+     * Returns the ordinal of the card player 1 or 2 last drew face up.
+     *
+     * @param p1 true for player 1
+     * @return card ordinal or {@link #NO_CARD}
+     */
+    public int getDrawnCard(boolean p1) {
+        return p1 ? drawn1 : drawn2;
+    }
+
+    /**
+     * Returns the number of steps played since the deal.
+     *
+     * @return steps played
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns the number of turns (cards drawn face up) since the deal.
+     *
+     * @return turns played
+     */
+    public long getTurns() {
+        return turns;
+    }
+
+    /**
+     * Returns the number of ties since the deal.
+     *
+     * @return wars started
+     */
+    public long getWars() {
+        return wars;
+    }
+
+    /**
+     * Returns the longest chain of consecutive ties since the deal.
+     *
+     * @return deepest war
+     */
+    public int getMaxWarDepth() {
+        return maxWarDepth;
+    }
+
+    /**
+     * Writes the state of the game to {@link #STATE_SIZE} bytes: the cards of player 1's deck, the pool and
+     * player 2's deck, followed by the deck and pool sizes, flags, winner and the last drawn cards.
+     * Statistics are not part of the state.
+     *
+     * @param dst    to write to
+     * @param offset of the first byte
+     */
+    public void writeState(byte[] dst, int offset) {
+        int i = offset;
+        for (int c = 0; c < size1; c++)
+            dst[i++] = deck1[(head1 + c) & MASK];
+        for (int c = 0; c < poolSize; c++)
+            dst[i++] = pool[c];
+        for (int c = 0; c < size2; c++)
+            dst[i++] = deck2[(head2 + c) & MASK];
+        i = offset + Card.STANDARD_DECK_SIZE;
+        dst[i++] = (byte) size1;
+        dst[i++] = (byte) poolSize;
+        dst[i++] = (byte) ((war ? FLAG_WAR : 0) | (mobilizing ? FLAG_MOBILIZING : 0) | (gameOver ? FLAG_GAME_OVER : 0));
+        dst[i++] = (byte) winner;
+        dst[i++] = (byte) drawn1;
+        dst[i] = (byte) drawn2;
+    }
+
+    /**
+     * Restores a state written by {@link #writeState}. Statistics start over.
+     *
+     * @param src    to read from
+     * @param offset of the first byte
+     * @throws IllegalArgumentException if the bytes are not a valid state
+     */
+    public void readState(byte[] src, int offset) {
+        int n = Card.STANDARD_DECK_SIZE;
+        int s1 = src[offset + n], ps = src[offset + n + 1], flags = src[offset + n + 2], w = src[offset + n + 3];
+        int d1 = src[offset + n + 4], d2 = src[offset + n + 5];
+        if (s1 < 0 || ps < 0 || s1 + ps > n || w < 0 || w > 2 || d1 < NO_CARD || d1 >= n || d2 < NO_CARD || d2 >= n)
+            throw new IllegalArgumentException("Invalid game state");
+
+        // every card must appear exactly once
+        long seen = 0;
+        for (int i = 0; i < n; i++) {
+            int card = src[offset + i];
+            if (card < 0 || card >= n || (seen & 1L << card) != 0)
+                throw new IllegalArgumentException("Invalid game state");
+            seen |= 1L << card;
+        }
+
+        System.arraycopy(src, offset, deck1, 0, s1);
+        System.arraycopy(src, offset + s1, pool, 0, ps);
+        System.arraycopy(src, offset + s1 + ps, deck2, 0, n - s1 - ps);
+        head1 = head2 = 0;
+        size1 = s1;
+        poolSize = ps;
+        size2 = n - s1 - ps;
+        war = (flags & FLAG_WAR) != 0;
+        mobilizing = (flags & FLAG_MOBILIZING) != 0;
+        gameOver = (flags & FLAG_GAME_OVER) != 0;
+        winner = w;
+        drawn1 = d1;
+        drawn2 = d2;
+        steps = turns = wars = 0;
+        warDepth = maxWarDepth = 0;
+    }
+}
@@ -32,6 +32,11 @@ public interface IWarView {
      */
     public void onGameLoadError();
 
+    /**
+     * Called when the game jumps to another point in its history (undo, redo).
+     */
+    public void onGameRestore();
+
 
     /**
      * Called when a new turn starts.
@@ -0,0 +1,77 @@
+package war;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a Java Flight Recorder event for an action of the {@link WarModel}, with the state of the game after it.
+ * Events are disabled unless a recording enables them (in a custom .jfc settings file or from JDK Mission Control);
+ * until then creating one is optimized away and they cost next to nothing.
+ *
+ * @author Komron Valijonov
+ */
+@Category("War")
+@Enabled(false)
+@StackTrace(false)
+abstract class ModelEvent extends Event {
+    @Label("Cards Left (Player 1)")
+    int cardsLeft1;
+
+    @Label("Cards Left (Player 2)")
+    int cardsLeft2;
+
+    @Label("Pool Size")
+    int poolSize;
+
+    @Label("War Depth")
+    int warDepth;
+
+    @Label("Game Over")
+    boolean gameOver;
+
+    /**
+     * Commits the event with the state of the game, if it is being recorded.
+     *
+     * @param model game the event is about
+     */
+    final void commit(WarModel model) {
+        if (!shouldCommit())
+            return;
+        Player player1 = model.getPlayer(true), player2 = model.getPlayer(false);
+        cardsLeft1 = player1 == null ? 0 : player1.cardsLeft();
+        cardsLeft2 = player2 == null ? 0 : player2.cardsLeft();
+        poolSize = model.getPoolSize();
+        warDepth = model.getWarDepth();  // the pool is already awarded on the turn that ends a war
+        gameOver = model.isGameOver();
+        commit();
+    }
+
+    @Name("war.NewGame")
+    @Label("New Game")
+    @Enabled(false)
+    static final class NewGame extends ModelEvent {
+    }
+
+    @Name("war.NextTurn")
+    @Label("Next Turn")
+    @Enabled(false)
+    static final class NextTurn extends ModelEvent {
+    }
+
+    @Name("war.PrepareForWar")
+    @Label("Prepare For War")
+    @Enabled(false)
+    static final class PrepareForWar extends ModelEvent {
+    }
+
+    @Name("war.EndGame")
+    @Label("End Game")
+    @Enabled(false)
+    static final class EndGame extends ModelEvent {
+    }
+}
@@ -0,0 +1,254 @@
+package war;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents an immutable pile of cards that is drawn from the top and added to at the bottom.
+ * Every "change" returns a new deck and leaves the old one untouched, which makes it cheap to keep old versions
+ * of a game around (undo, redo, what-if branches).
+ * <p>
+ * All versions of a deck share one append-only array of cards and only differ in the window [head, tail) they see.
+ * Drawing moves the head, adding cards writes past the tail. Cells below a version's tail are never written again,
+ * so old versions stay valid. Only when two versions both try to grow from the same tail (a branch) does the second
+ * one copy its (at most 52) cards into a fresh array.
+ *
+ * @author Komron Valijonov
+ */
+public final class PersistentDeck implements Iterable<Card>, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int MIN_CAPACITY = 64;
+
+    private final Cells cells;
+    private final int head, tail;
+
+    private PersistentDeck(Cells cells, int head, int tail) {
+        this.cells = cells;
+        this.head = head;
+        this.tail = tail;
+    }
+
+    /**
+     * Returns a new empty deck.
+     *
+     * @return empty deck
+     */
+    public static PersistentDeck empty() {
+        return new PersistentDeck(new Cells(MIN_CAPACITY), 0, 0);
+    }
+
+    /**
+     * Returns a deck with the given cards, the first card being the top of the deck.
+     *
+     * @param cards to put in the deck
+     * @return new deck
+     */
+    public static PersistentDeck of(Collection<Card> cards) {
+        return empty().addAll(cards);
+    }
+
+    /**
+     * Returns a deck of the cards with the ordinals stored in a buffer, the first card being the top of the deck.
+     *
+     * @param buffer holding one ordinal per byte
+     * @param offset of the first ordinal
+     * @param size   number of cards
+     * @return new deck
+     */
+    static PersistentDeck ofOrdinals(ByteBuffer buffer, int offset, int size) {
+        Cells cells = new Cells(Math.max(MIN_CAPACITY, size));
+        for (int i = 0; i < size; i++)
+            cells.cards[i] = Card.fromOrdinal(buffer.get(offset + i));
+        cells.size.set(size);
+        return new PersistentDeck(cells, 0, size);
+    }
+
+    /**
+     * Returns the number of cards in this deck.
+     *
+     * @return number of cards
+     */
+    public int size() {
+        return tail - head;
+    }
+
+    /**
+     * Returns true if there are no cards in this deck.
+     *
+     * @return true when empty
+     */
+    public boolean isEmpty() {
+        return tail == head;
+    }
+
+    /**
+     * Returns the card at the given position, 0 being the top of the deck.
+     *
+     * @param index of card
+     * @return card at index
+     */
+    public Card get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for deck of " + size());
+        return cells.cards[head + index];
+    }
+
+    /**
+     * Returns the top card of the deck.
+     *
+     * @return top card
+     * @throws NoSuchElementException if the deck is empty
+     */
+    public Card top() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+        return cells.cards[head];
+    }
+
+    /**
+     * Returns this deck without its top card (O(1)).
+     *
+     * @return deck without the top card
+     * @throws NoSuchElementException if the deck is empty
+     */
+    public PersistentDeck drawn() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+        return new PersistentDeck(cells, head + 1, tail);
+    }
+
+    /**
+     * Returns an empty deck that keeps growing in this deck's array, so clearing and refilling (the pool) does not
+     * allocate a new array every turn.
+     *
+     * @return empty deck
+     */
+    public PersistentDeck cleared() {
+        return new PersistentDeck(cells, tail, tail);
+    }
+
+    /**
+     * Returns this deck with a card added to the bottom.
+     *
+     * @param card to add
+     * @return deck with the card added
+     */
+    public PersistentDeck add(Card card) {
+        PersistentDeck deck = claim(1);
+        deck.cells.cards[deck.tail - 1] = card;
+        return deck;
+    }
+
+    /**
+     * Returns this deck with the cards added to the bottom, in iteration order.
+     *
+     * @param cards to add
+     * @return deck with the cards added
+     */
+    public PersistentDeck addAll(Collection<Card> cards) {
+        PersistentDeck deck = claim(cards.size());
+        int i = deck.tail - cards.size();
+        for (Card card : cards)
+            deck.cells.cards[i++] = card;
+        return deck;
+    }
+
+    /**
+     * Returns this deck with the cards of another deck added to the bottom, top card first.
+     *
+     * @param cards to add
+     * @return deck with the cards added
+     */
+    public PersistentDeck addAll(PersistentDeck cards) {
+        PersistentDeck deck = claim(cards.size());
+        System.arraycopy(cards.cells.cards, cards.head, deck.cells.cards, deck.tail - cards.size(), cards.size());
+        return deck;
+    }
+
+    /**
+     * Returns a deck with room for n more cards at the bottom, sharing this deck's array when nobody else has
+     * grown it past our tail yet and copying our cards otherwise.
+     */
+    private PersistentDeck claim(int n) {
+        if (n == 0)
+            return this;
+        int newTail = tail + n;
+        if (newTail <= cells.cards.length && cells.size.compareAndSet(tail, newTail))
+            return new PersistentDeck(cells, head, newTail);
+
+        // somebody else owns the cells past our tail, or there is no room left: copy only the cards we can see
+        Cells copy = new Cells(Math.max(MIN_CAPACITY, 2 * (size() + n)));
+        System.arraycopy(cells.cards, head, copy.cards, 0, size());
+        copy.size.set(size() + n);
+        return new PersistentDeck(copy, 0, size() + n);
+    }
+
+    /**
+     * Returns a copy of the cards in this deck, top card first.
+     *
+     * @return list of cards
+     */
+    public List<Card> toList() {
+        List<Card> list = new ArrayList<>(size());
+        for (int i = head; i < tail; i++)
+            list.add(cells.cards[i]);
+        return list;
+    }
+
+    @Override
+    public Iterator<Card> iterator() {
+        return new Iterator<Card>() {
+            private int next = head;
+
+            @Override
+            public boolean hasNext() {
+                return next < tail;
+            }
+
+            @Override
+            public Card next() {
+                if (next >= tail)
+                    throw new NoSuchElementException();
+                return cells.cards[next++];
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+    /**
+     * Only serialize the cards this version can see, not the whole shared array.
+     */
+    private Object writeReplace() {
+        if (head == 0 && tail == cells.cards.length)
+            return this;
+        Cells copy = new Cells(size());
+        System.arraycopy(cells.cards, head, copy.cards, 0, size());
+        copy.size.set(size());
+        return new PersistentDeck(copy, 0, size());
+    }
+
+    /**
+     * The array shared by all versions of a deck.
+     */
+    private static final class Cells implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Card[] cards;
+        private final AtomicInteger size = new AtomicInteger();  // cells in use by the longest version
+
+        Cells(int capacity) {
+            cards = new Card[capacity];
+        }
+    }
+}
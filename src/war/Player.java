@@ -13,7 +13,7 @@ import java.util.LinkedList;
 public class Player implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private LinkedList<Card> deck;
+    private PersistentDeck deck;
     private String name;
 
     /**
@@ -23,9 +23,19 @@ public class Player implements Serializable {
      * @param deck cards player has
      */
     public Player(String name, LinkedList<Card> deck) {
+        this(name, PersistentDeck.of(deck));
+    }
+
+    /**
+     * Creates a new player.
+     *
+     * @param name of player
+     * @param deck cards player has
+     */
+    public Player(String name, PersistentDeck deck) {
         /*
-         * We used the LinkedList for the deck because it is a more efficient data structure for this use case.
-         * In particular, we need to be able to draw cards from the top of the deck and add cards to the bottom of the deck.
+         * We use a PersistentDeck because we need to be able to draw cards from the top of the deck and add cards to
+         * the bottom of the deck, and the model keeps every previous version of the deck around for undo.
          */
         this.name = name;
         this.deck = deck;
@@ -55,7 +65,9 @@ public class Player implements Serializable {
      * @return card drawn from deck (the top/last card)
      */
     public Card drawCard() {
-        return deck.pop();
+        Card card = deck.top();
+        deck = deck.drawn();
+        return card;
     }
 
     /**
@@ -64,7 +76,16 @@ public class Player implements Serializable {
      * @param cards to be added to deck
      */
     public void addCards(Collection<Card> cards) {
-        deck.addAll(cards);
+        deck = deck.addAll(cards);
+    }
+
+    /**
+     * Adds a pile of cards to this player's deck.
+     *
+     * @param cards to be added to deck
+     */
+    public void addCards(PersistentDeck cards) {
+        deck = deck.addAll(cards);
     }
 
     /**
@@ -90,7 +111,7 @@ public class Player implements Serializable {
      *
      * @return deck of cards
      */
-    public LinkedList<Card> getDeck() {
+    public PersistentDeck getDeck() {
         return deck;
     }
 
@@ -99,7 +120,7 @@ public class Player implements Serializable {
      *
      * @param deck to be set
      */
-    public void setDeck(LinkedList<Card> deck) {
+    public void setDeck(PersistentDeck deck) {
         this.deck = deck;
     }
 }
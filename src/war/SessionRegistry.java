@@ -0,0 +1,505 @@
+package war;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the games of a server with many players, found by session id. Sessions are spread over shards by id,
+ * and every shard has its own lock, so lookups of different shards never wait for each other.
+ * <p>
+ * Only so many sessions are kept live (as {@link WarModel}s). The least recently used session of a full shard is
+ * evicted, and so is any session idle for longer than the time to live: it is written to its own file in the save
+ * file format (see {@link StorageModel}) and read back transparently the next time it is asked for. A session is
+ * encoded under its shard's lock but written after the lock is released, so lookups never wait for the disk; a session
+ * asked for while it is being written is taken back as it was.
+ * Hits, misses (sessions read back from disk), evictions and lookup times are counted.
+ *
+ * @author Komron Valijonov
+ */
+public class SessionRegistry implements Closeable {
+    private static final Logger logger = Logger.getLogger(SessionRegistry.class.getName());
+    private static final String PREFIX = "session-", SUFFIX = ".war";
+
+    private final Path folder;
+    private final Supplier<IWarView> views;
+    private final Shard[] shards;
+    private final int shardCapacity;
+    private final long ttlNanos;
+    private final AtomicLong nextId = new AtomicLong();
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(1024);  // lookup times, see bucketOf
+
+    /**
+     * Opens a registry. Sessions already evicted to the folder can be looked up again.
+     *
+     * @param folder    to evict sessions to
+     * @param shards    number of shards (a power of two)
+     * @param maxLive   most sessions kept live, over all shards
+     * @param ttlMillis time after which an idle session is evicted, 0 to only evict when a shard is full
+     * @param views     makes the view of every session, which the model notifies as the game progresses
+     * @throws IOException if the folder cannot be read
+     */
+    public SessionRegistry(Path folder, int shards, int maxLive, long ttlMillis, Supplier<IWarView> views)
+            throws IOException {
+        if (shards < 1 || Integer.bitCount(shards) != 1)
+            throw new IllegalArgumentException("Shards must be a power of two");
+        if (maxLive < shards || ttlMillis < 0)
+            throw new IllegalArgumentException("Every shard needs room for a live session");
+        this.folder = folder;
+        this.views = views;
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++)
+            this.shards[i] = new Shard();
+        this.shardCapacity = maxLive / shards;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+
+        // carry on numbering after the sessions on disk
+        Files.createDirectories(folder);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    long id = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                    nextId.accumulateAndGet(id + 1, Math::max);
+                } catch (NumberFormatException e) {
+                    logger.warning("Ignoring " + file);
+                }
+            }
+        }
+
+        if (ttlMillis > 0) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "war-sessions");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, ttlMillis / 2);
+            sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Starts a new game in a new session.
+     *
+     * @return id of the session
+     */
+    public long create() {
+        long id = nextId.getAndIncrement();
+        Session session = new Session(views.get(), savesOf(id));
+        session.model.newGame();
+        Shard shard = shardOf(id);
+        List<Eviction> evicted;
+        synchronized (shard) {
+            evicted = shard.put(id, session);
+        }
+        write(shard, evicted);
+        return id;
+    }
+
+    /**
+     * Runs an action on the game of a session, reading the session back from disk if it was evicted. The shard's lock
+     * is held during the action, so it must be short (a turn or two), and the model must not be kept afterwards.
+     *
+     * @param id     of the session
+     * @param action to run on the session's model
+     * @param <T>    type of result
+     * @return result of the action
+     * @throws NoSuchElementException if there is no such session
+     * @throws IOException            if the evicted session cannot be read back
+     */
+    public <T> T withSession(long id, Function<WarModel, T> action) throws IOException {
+        Shard shard = shardOf(id);
+        List<Eviction> evicted = List.of();
+        T result;
+        synchronized (shard) {
+            long start = System.nanoTime();
+            Session session = shard.sessions.get(id);
+            if (session != null) {
+                hits.increment();
+            } else {
+                Eviction eviction = shard.evicting.remove(id);
+                if (eviction != null) {
+                    session = eviction.session;
+                    hits.increment();
+                } else {
+                    session = read(id);
+                    misses.increment();
+                }
+                evicted = shard.put(id, session);
+            }
+            session.used = System.nanoTime();
+            latencies.incrementAndGet(bucketOf(session.used - start));
+            result = action.apply(session.model);
+        }
+        write(shard, evicted);
+        return result;
+    }
+
+    /**
+     * Ends a session, live or evicted.
+     *
+     * @param id of the session
+     * @throws IOException if the evicted session cannot be deleted
+     */
+    public void remove(long id) throws IOException {
+        Shard shard = shardOf(id);
+        synchronized (shard) {
+            Session session = shard.sessions.remove(id);
+            Eviction eviction = shard.evicting.remove(id);
+            if (session != null)
+                session.removed = true;
+            if (eviction != null)
+                eviction.session.removed = true;
+            Files.deleteIfExists(pathOf(id));
+        }
+    }
+
+    /**
+     * Evicts every session that has been idle for longer than the time to live, if there is one. Runs on its own
+     * every half time to live.
+     *
+     * @return number of sessions evicted
+     */
+    public int sweep() {
+        if (ttlNanos == 0)
+            return 0;
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Shard shard : shards) {
+            List<Eviction> idle = new ArrayList<>();
+            synchronized (shard) {
+                // least recently used first, so stop at the first one still in use
+                Iterator<Map.Entry<Long, Session>> it = shard.sessions.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, Session> entry = it.next();
+                    if (now - entry.getValue().used <= ttlNanos)
+                        break;
+                    Eviction eviction = shard.detach(entry.getKey(), entry.getValue());
+                    if (eviction == null)
+                        break;
+                    it.remove();
+                    idle.add(eviction);
+                }
+            }
+            evicted += idle.size() - write(shard, idle);
+        }
+        return evicted;
+    }
+
+    /**
+     * Evicts every live session and stops the sweeper.
+     *
+     * @throws IOException if a session could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (sweeper != null) {
+            // interrupting a sweep would close the file it is writing
+            sweeper.shutdown();
+            try {
+                sweeper.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int failed = 0;
+        for (Shard shard : shards) {
+            List<Eviction> live = new ArrayList<>();
+            synchronized (shard) {
+                Iterator<Map.Entry<Long, Session>> it = shard.sessions.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, Session> entry = it.next();
+                    Eviction eviction = shard.detach(entry.getKey(), entry.getValue());
+                    if (eviction != null) {
+                        it.remove();
+                        live.add(eviction);
+                    } else {
+                        failed++;
+                    }
+                }
+            }
+            failed += write(shard, live);
+        }
+        if (failed > 0)
+            throw new IOException(failed + " sessions could not be written");
+    }
+
+    /**
+     * Writes sessions taken out of a shard to disk, like saving a game, without holding the shard's lock. A session
+     * that cannot be written is put back live rather than lost.
+     *
+     * @return number of sessions that could not be written
+     */
+    private int write(Shard shard, List<Eviction> evicted) {
+        int failed = 0;
+        for (Eviction eviction : evicted) {
+            Path path = pathOf(eviction.id);
+            boolean written;
+            try {
+                eviction.write(path);
+                written = true;
+            } catch (IOException | RuntimeException e) {
+                logger.severe("Could not evict session " + eviction.id + ": " + e);
+                written = false;
+            }
+            synchronized (shard) {
+                if (eviction.session.removed) {
+                    // removed while it was being written
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        logger.warning("Could not delete session " + eviction.id + ": " + e);
+                    }
+                    continue;
+                }
+                // unless it was taken back or evicted again in the meantime
+                if (shard.evicting.get(eviction.id) == eviction) {
+                    shard.evicting.remove(eviction.id);
+                    if (!written)
+                        shard.sessions.put(eviction.id, eviction.session);
+                }
+            }
+            if (written)
+                evictions.increment();
+            else
+                failed++;
+        }
+        return failed;
+    }
+
+    private Session read(long id) throws IOException {
+        Path path = pathOf(id);
+        if (id < 0 || id >= nextId.get() || !Files.exists(path))
+            throw new NoSuchElementException("No session " + id);
+        Session session = new Session(views.get(), savesOf(id));
+        session.storage.decode(ByteBuffer.wrap(Files.readAllBytes(path)), session.model);
+        session.model.resetHistory();
+        return session;
+    }
+
+    private Path savesOf(long id) {
+        // where the game itself saves to (see WarModel#saveGame), apart from every other game
+        return folder.resolve("saves").resolve(Long.toString(id));
+    }
+
+    private Path pathOf(long id) {
+        return folder.resolve(PREFIX + id + SUFFIX);
+    }
+
+    private Shard shardOf(long id) {
+        // spread consecutive ids over the shards
+        long h = id * 0x9E3779B97F4A7C15L;
+        return shards[(int) (h >>> 32) & (shards.length - 1)];
+    }
+
+    /**
+     * Returns the number of lookups that found the session live.
+     *
+     * @return hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that read the session back from disk.
+     *
+     * @return misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the share of lookups that found the session live.
+     *
+     * @return hit rate from 0 to 1, 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hits = getHits(), total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of sessions written to disk, because their shard was full or they were idle.
+     *
+     * @return evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of live sessions.
+     *
+     * @return live sessions
+     */
+    public int getLiveCount() {
+        int live = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                live += shard.sessions.size();
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Returns a percentile of the time lookups took, from taking the shard's lock to having the session (without
+     * waiting for the lock or running the action), to within 1/16 of the value.
+     *
+     * @param percentile from 0 to 100, such as 99
+     * @return lookup time in nanoseconds, 0 before the first lookup
+     */
+    public long getLookupNanos(double percentile) {
+        long total = 0;
+        long[] counts = new long[latencies.length()];
+        for (int i = 0; i < counts.length; i++)
+            total += counts[i] = latencies.get(i);
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(percentile / 100 * total), seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0)
+                return upperBoundOf(i);
+        }
+        return upperBoundOf(counts.length - 1);
+    }
+
+    /**
+     * Buckets are exact below 16 and then 16 per power of two.
+     */
+    private static int bucketOf(long nanos) {
+        if (nanos < 16)
+            return (int) Math.max(0, nanos);
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        return (exponent - 3) * 16 + (int) (nanos >>> exponent - 4 & 15);
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < 16)
+            return bucket;
+        int exponent = bucket / 16 + 3, sub = bucket % 16;
+        return ((16L + sub + 1) << exponent - 4) - 1;
+    }
+
+    /**
+     * A live game and what it needs.
+     */
+    private static final class Session {
+        private final StorageModel storage;
+        private final WarModel model;
+        private long used;  // when last looked up, guarded by the shard
+        private long evicted;  // copies taken for eviction, guarded by the shard
+        private long written;  // newest copy on disk, guarded by itself
+        private boolean removed;  // guarded by the shard
+
+        Session(IWarView view, Path saves) {
+            this.storage = new StorageModel(view, saves, AsyncFileWriter.getDefault());
+            this.model = new WarModel(view, storage);
+            this.used = System.nanoTime();
+        }
+    }
+
+    /**
+     * A session on its way to disk: a copy encoded under the shard's lock, to be written after it is released.
+     */
+    private static final class Eviction {
+        private final long id;
+        private final Session session;
+        private final ByteBuffer file;
+        private final long copy;
+
+        Eviction(long id, Session session, ByteBuffer file, long copy) {
+            this.id = id;
+            this.session = session;
+            this.file = file;
+            this.copy = copy;
+        }
+
+        /**
+         * Writes the copy, unless a newer copy of the session got to disk first.
+         */
+        void write(Path path) throws IOException {
+            synchronized (session) {
+                if (copy <= session.written)
+                    return;
+                StorageModel.write(path, file);
+                session.written = copy;
+            }
+        }
+    }
+
+    /**
+     * Live sessions of a shard, least recently used first, and the sessions being written. Guarded by itself.
+     */
+    private final class Shard {
+        private final LinkedHashMap<Long, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<Long, Eviction> evicting = new HashMap<>();
+
+        /**
+         * Adds a session, taking out the least recently used ones if the shard is full.
+         *
+         * @return sessions taken out, for the caller to write once it has released the lock
+         */
+        List<Eviction> put(long id, Session session) {
+            sessions.put(id, session);
+            List<Eviction> evicted = new ArrayList<>();
+            Iterator<Map.Entry<Long, Session>> it = sessions.entrySet().iterator();
+            while (sessions.size() > shardCapacity && it.hasNext()) {
+                Map.Entry<Long, Session> eldest = it.next();
+                if (eldest.getKey() == id)
+                    break;
+                Eviction eviction = detach(eldest.getKey(), eldest.getValue());
+                if (eviction != null) {
+                    it.remove();
+                    evicted.add(eviction);
+                }
+            }
+            return evicted;
+        }
+
+        /**
+         * Encodes a session to be written. The caller takes it out of the live sessions if this succeeds.
+         *
+         * @return eviction, or null if the session cannot be encoded and must stay live
+         */
+        Eviction detach(long id, Session session) {
+            ByteBuffer file;
+            try {
+                file = session.storage.encode(session.model);
+            } catch (RuntimeException e) {
+                logger.severe("Could not evict session " + id + ": " + e);
+                return null;
+            }
+            Eviction eviction = new Eviction(id, session, file, ++session.evicted);
+            evicting.put(id, eviction);
+            return eviction;
+        }
+    }
+}
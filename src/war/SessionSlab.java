@@ -0,0 +1,280 @@
+package war;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a store of suspended games in compact form, for hosting many more games than could be kept as live
+ * {@link WarModel}s. Every game takes {@value #SLOT_BYTES} bytes in one shared long array: the 52 card ordinals in
+ * 6 bits each (player 1's deck, the pool and player 2's deck, as in {@link HeadlessGame#writeState}), the sizes,
+ * flags, winner, drawn and mobilised cards, and the time the game was last touched. Player names are kept only if
+ * they are not the default ones.
+ * <p>
+ * A game is parked (dehydrated) from a model and hydrated back into one; the history of the game is not kept, so
+ * the hydrated model starts a new history for undo. Like {@link WarModel}, a slab must only be used by one thread
+ * at a time.
+ *
+ * @author Komron Valijonov
+ */
+public class SessionSlab {
+    public static final int SLOT_BYTES = 64;
+    private static final int LONGS = SLOT_BYTES / Long.BYTES;
+    private static final int CARDS_PER_LONG = 10;  // 6 bits each
+    private static final int META = Card.STANDARD_DECK_SIZE / CARDS_PER_LONG;  // long holding the last cards and the rest
+    private static final int META_SHIFT = 6 * (Card.STANDARD_DECK_SIZE % CARDS_PER_LONG);
+    private static final int TOUCHED = LONGS - 1;  // long holding the time last touched
+    private static final int USED = LONGS - 2;  // long that is 1 if the slot holds a game
+    private static final int NONE = 63;  // 6-bit value for no card
+    private static final String[] DEFAULT_NAMES = {"Player 1", "Player 2"};
+
+    private long[] slab;
+    private int[] free;  // stack of free slots
+    private int freeCount;
+    private int size;
+    private final Map<Integer, String> names = new HashMap<>();  // custom names by slot * 2 + player (0 or 1)
+
+    /**
+     * Creates a slab, which grows as needed.
+     *
+     * @param capacity number of games to make room for up front
+     */
+    public SessionSlab(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive");
+        slab = new long[capacity * LONGS];
+        free = new int[capacity];
+        for (int i = 0; i < capacity; i++)
+            free[i] = capacity - 1 - i;
+        freeCount = capacity;
+    }
+
+    /**
+     * Parks a game in a new slot.
+     *
+     * @param model game to park, which can be thrown away afterwards
+     * @param view  of the game, whose mobilised cards are parked too (may be null)
+     * @return id of the session
+     */
+    public int park(WarModel model, IWarView view) {
+        if (freeCount == 0)
+            grow();
+        int session = free[--freeCount];
+        size++;
+        slab[session * LONGS + USED] = 1;
+        store(session, model, view);
+        return session;
+    }
+
+    /**
+     * Parks a game again in the slot it came from.
+     *
+     * @param session id of the session
+     * @param model   game to park
+     * @param view    of the game, whose mobilised cards are parked too (may be null)
+     */
+    public void store(int session, WarModel model, IWarView view) {
+        int base = check(session);
+        byte[] state = new byte[HeadlessGame.STATE_SIZE];
+        model.toHeadless(false).writeState(state, 0);
+        Arrays.fill(slab, base, base + USED, 0);
+        for (int i = 0; i < Card.STANDARD_DECK_SIZE; i++)
+            slab[base + i / CARDS_PER_LONG] |= (long) state[i] << 6 * (i % CARDS_PER_LONG);
+
+        int n = Card.STANDARD_DECK_SIZE;
+        long meta = state[n]  // size of player 1's deck
+                | (long) state[n + 1] << 6  // pool size
+                | (long) state[n + 2] << 12  // flags
+                | (long) state[n + 3] << 15  // winner
+                | (long) sixBits(state[n + 4]) << 17
+                | (long) sixBits(state[n + 5]) << 23
+                | (long) sixBits(view == null ? -1 : ordinalOf(view.getMobilisedCard(true))) << 29
+                | (long) sixBits(view == null ? -1 : ordinalOf(view.getMobilisedCard(false))) << 35;
+        slab[base + META] |= meta << META_SHIFT;
+        slab[base + TOUCHED] = System.currentTimeMillis();
+
+        for (int p = 0; p < 2; p++) {
+            String name = model.getPlayer(p == 0).getName();
+            if (DEFAULT_NAMES[p].equals(name))
+                names.remove(session * 2 + p);
+            else
+                names.put(session * 2 + p, name);
+        }
+    }
+
+    /**
+     * Hydrates a parked game into a new model. The game stays parked.
+     *
+     * @param session id of the session
+     * @param view    to notify as the game progresses, which also gets the mobilised cards back
+     * @param storage to save and load the game with
+     * @return live model of the game
+     */
+    public WarModel hydrate(int session, IWarView view, StorageModel storage) {
+        WarModel model = new WarModel(view, storage);
+        hydrate(session, model, view);
+        return model;
+    }
+
+    /**
+     * Hydrates a parked game into an existing model, replacing its game. The game stays parked.
+     *
+     * @param session id of the session
+     * @param model   to load the game into
+     * @param view    to give the mobilised cards back to (may be null)
+     */
+    public void hydrate(int session, WarModel model, IWarView view) {
+        int base = check(session);
+        int n = Card.STANDARD_DECK_SIZE;
+        byte[] cards = new byte[n];
+        for (int i = 0; i < n; i++)
+            cards[i] = (byte) (slab[base + i / CARDS_PER_LONG] >>> 6 * (i % CARDS_PER_LONG) & 63);
+        long meta = slab[base + META] >>> META_SHIFT;
+        int size1 = (int) (meta & 63), poolSize = (int) (meta >>> 6 & 63), flags = (int) (meta >>> 12 & 7);
+
+        ByteBuffer ordinals = ByteBuffer.wrap(cards);
+        model.setPlayer(new Player(nameOf(session, 0), PersistentDeck.ofOrdinals(ordinals, 0, size1)), true);
+        model.setPlayer(new Player(nameOf(session, 1),
+                PersistentDeck.ofOrdinals(ordinals, size1 + poolSize, n - size1 - poolSize)), false);
+        model.setPool(PersistentDeck.ofOrdinals(ordinals, size1, poolSize));
+        model.setIsWar((flags & HeadlessGame.FLAG_WAR) != 0);
+        model.setIsMobilizing((flags & HeadlessGame.FLAG_MOBILIZING) != 0);
+        model.setIsGameOver((flags & HeadlessGame.FLAG_GAME_OVER) != 0);
+        model.setCurrentlyDrawnCard(cardOf(meta >>> 17), true);
+        model.setCurrentlyDrawnCard(cardOf(meta >>> 23), false);
+        if (view != null) {
+            view.setMobilisedCard(true, cardOf(meta >>> 29));
+            view.setMobilisedCard(false, cardOf(meta >>> 35));
+        }
+        model.resetHistory();
+        slab[base + TOUCHED] = System.currentTimeMillis();
+    }
+
+    /**
+     * Frees the slot of a session.
+     *
+     * @param session id of the session
+     */
+    public void release(int session) {
+        int base = check(session);
+        Arrays.fill(slab, base, base + LONGS, 0);
+        names.remove(session * 2);
+        names.remove(session * 2 + 1);
+        free[freeCount++] = session;
+        size--;
+    }
+
+    /**
+     * Returns when the session was last parked or hydrated.
+     *
+     * @param session id of the session
+     * @return time in milliseconds (see {@link System#currentTimeMillis()})
+     */
+    public long getLastTouched(int session) {
+        return slab[check(session) + TOUCHED];
+    }
+
+    /**
+     * Returns the number of parked games.
+     *
+     * @return games
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of games there is room for before the slab grows.
+     *
+     * @return capacity
+     */
+    public int capacity() {
+        return free.length;
+    }
+
+    private int check(int session) {
+        if (session < 0 || session >= free.length || slab[session * LONGS + USED] == 0)
+            throw new IllegalArgumentException("No session " + session);
+        return session * LONGS;
+    }
+
+    private void grow() {
+        int capacity = free.length, bigger = capacity * 2;
+        slab = Arrays.copyOf(slab, bigger * LONGS);
+        free = Arrays.copyOf(free, bigger);
+        for (int i = 0; i < capacity; i++)
+            free[freeCount++] = bigger - 1 - i;
+    }
+
+    private String nameOf(int session, int player) {
+        return names.getOrDefault(session * 2 + player, DEFAULT_NAMES[player]);
+    }
+
+    private static int sixBits(int ordinal) {
+        return ordinal < 0 ? NONE : ordinal;
+    }
+
+    private static int ordinalOf(Card card) {
+        return card == null ? -1 : card.ordinal();
+    }
+
+    private static Card cardOf(long bits) {
+        int ordinal = (int) (bits & 63);
+        return ordinal == NONE ? null : Card.fromOrdinal(ordinal);
+    }
+
+    /**
+     * Measures the heap taken by parked games compared with live models.
+     * Usage: SessionSlab [sessions] [liveModels]
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int live = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        DealGenerator deals = new DealGenerator(DealGenerator.DEFAULT_ALGORITHM, 42);
+
+        // a few freshly dealt games, parked over and over
+        WarModel[] games = new WarModel[64];
+        byte[] deal = new byte[Card.STANDARD_DECK_SIZE];
+        ByteBuffer ordinals = ByteBuffer.wrap(deal);
+        for (int g = 0; g < games.length; g++) {
+            deals.next(deal, 0);
+            games[g] = new WarModel(null, null);
+            games[g].setPlayer(new Player(DEFAULT_NAMES[0], PersistentDeck.ofOrdinals(ordinals, 0, 26)), true);
+            games[g].setPlayer(new Player(DEFAULT_NAMES[1], PersistentDeck.ofOrdinals(ordinals, 26, 26)), false);
+            games[g].setIsGameOver(false);
+            games[g].resetHistory();
+        }
+
+        long before = usedHeap(memory);
+        SessionSlab slab = new SessionSlab(sessions);
+        for (int s = 0; s < sessions; s++)
+            slab.park(games[s % games.length], null);
+        long parked = usedHeap(memory) - before;
+
+        // what the same games cost as live models
+        WarModel[] models = new WarModel[live];
+        before = usedHeap(memory);
+        for (int m = 0; m < live; m++)
+            models[m] = slab.hydrate(m, (IWarView) null, null);
+        long hydrated = usedHeap(memory) - before;
+
+        // printed last so the slab and the models are still reachable when measured
+        System.out.printf("%,d parked games: %,d bytes, %.1f bytes per game%n", slab.size(), parked,
+                (double) parked / slab.size());
+        System.out.printf("%,d live models: %,d bytes, %.1f bytes per game%n", models.length, hydrated,
+                (double) hydrated / models.length);
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,58 @@
+package war;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a Java Flight Recorder event for one phase of saving or loading a game in the {@link StorageModel}.
+ * Disabled unless a recording enables it, like the {@link ModelEvent}s.
+ *
+ * @author Komron Valijonov
+ */
+@Name("war.Storage")
+@Label("Storage")
+@Category("War")
+@Enabled(false)
+@StackTrace(false)
+final class StorageEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    private StorageEvent(String phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param phase name of the phase, such as "encode" or "verify"
+     * @return event to {@link #end(long)} when the phase is done
+     */
+    static StorageEvent start(String phase) {
+        StorageEvent event = new StorageEvent(phase);
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event, if it is being recorded.
+     *
+     * @param bytes size of the data the phase worked on
+     */
+    void end(long bytes) {
+        if (shouldCommit()) {
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
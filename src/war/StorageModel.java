@@ -1,33 +1,66 @@
 package war;
 
-import java.io.*;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32C;
 import java.util.logging.Logger;
 
 /**
  * <strong>Final Project</strong><br>
  * Represents the storage of the game. Enables saving and loading of games from files.
+ * <p>
+ * A game is saved to a single binary file: a header with a CRC32C checksum of the payload, followed by the payload
+ * (the game in the {@link HeadlessGame#writeState} format, the face down "mobilised" cards and the player names).
+ * Loading reads the whole file into one buffer with a single channel read, verifies the checksum and decodes the card
+ * ordinals straight from the buffer, so a corrupt file is detected before anything is changed and loading allocates
+ * little more than the file and the cards. A save is about a hundred bytes, too small to be worth mapping.
+ * <p>
+ * Every storage keeps its game in its own folder, so many games can be saved at once, and can save without blocking
+ * (see {@link #saveAsync}).
  *
  * @author Komron Valijonov
  */
 public class StorageModel {
     private static final Logger logger = Logger.getLogger(StorageModel.class.getName());
     private static final String FOLDER_NAME = "./war-saves";
-    private static final String POOL_CARDS_FILE_NAME = FOLDER_NAME + File.pathSeparator + "pool-cards.dat";
-    private static final String GAME_STATE_FILE_NAME = FOLDER_NAME + File.pathSeparator + "game-state.dat";
-    private static final String PLAYER1_FILE_NAME = FOLDER_NAME + File.pathSeparator + "player1.dat";
-    private static final String PLAYER2_FILE_NAME = FOLDER_NAME + File.pathSeparator + "player2.dat";
-    private static final String MOBILISED_CARD1_FILE_NAME = FOLDER_NAME + File.pathSeparator + "mobilised-card1.dat";
-    private static final String MOBILISED_CARD2_FILE_NAME = FOLDER_NAME + File.pathSeparator + "mobilised-card2.dat";
-    private static final String CURRENTLY_DRAWN_CARD1_FILE_NAME = FOLDER_NAME + File.pathSeparator + "currently-drawn-card1.dat";
-    private static final String CURRENTLY_DRAWN_CARD2_FILE_NAME = FOLDER_NAME + File.pathSeparator + "currently-drawn-card2.dat";
+    private static final String GAME_FILE_NAME = "game.war";
+
+    // file layout
+    private static final int MAGIC = 0x57415253;  // "WARS"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;  // magic, version, reserved, payload length, checksum
+    private static final int MOBILISED_OFFSET = HeadlessGame.STATE_SIZE;  // payload offsets
+    private static final int NAMES_OFFSET = MOBILISED_OFFSET + 2;
+    private static final int MAX_NAME_BYTES = 0xffff;
 
     private final IWarView view;
+    private final Path folder;  // namespace of this game, no other storage writes here
+    private final AsyncFileWriter writer;
+    private CompletableFuture<Void> lastSave = CompletableFuture.completedFuture(null);  // guarded by this
 
     public StorageModel(IWarView view) {
+        this(view, Paths.get(FOLDER_NAME), AsyncFileWriter.getDefault());
+    }
+
+    /**
+     * Creates the storage of one game, for running many games side by side.
+     *
+     * @param view   to notify of saving and loading
+     * @param folder to keep the game's files in, one per game
+     * @param writer to save asynchronously with, usually shared by all games
+     */
+    public StorageModel(IWarView view, Path folder, AsyncFileWriter writer) {
         this.view = view;
+        this.folder = folder;
+        this.writer = writer;
     }
 
     /**
@@ -35,140 +68,228 @@ public class StorageModel {
      */
     public void save(WarModel model) {
         try {
-            File folder = new File(FOLDER_NAME);
-            if (!folder.exists()) {
-                folder.mkdir();
-            }
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(POOL_CARDS_FILE_NAME))) {
-                out.writeObject(model.getPool());
-            }
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(PLAYER1_FILE_NAME))) {
-                out.writeObject(model.getPlayer(true));
-            }
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(PLAYER2_FILE_NAME))) {
-                out.writeObject(model.getPlayer(false));
-            }
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(GAME_STATE_FILE_NAME))) {
-                out.writeObject(model);
-            }
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(MOBILISED_CARD1_FILE_NAME))) {
-                out.writeObject(view.getMobilisedCard(true));
-            }
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(MOBILISED_CARD2_FILE_NAME))) {
-                out.writeObject(view.getMobilisedCard(false));
-            }
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(CURRENTLY_DRAWN_CARD1_FILE_NAME))) {
-                out.writeObject(model.getCurrentlyDrawnCard(true));
-            }
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(CURRENTLY_DRAWN_CARD2_FILE_NAME))) {
-                out.writeObject(model.getCurrentlyDrawnCard(false));
-            }
+            Files.createDirectories(folder);
+            StorageEvent event = StorageEvent.start("encode");
+            ByteBuffer file = encode(model);
+            event.end(file.remaining());
+
+            write(folder.resolve(GAME_FILE_NAME), file);
             view.onGameSave();
-        } catch (IOException e) {
-            logger.severe(e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            logger.severe(e.toString());
             view.onGameSaveError();
         }
-
     }
 
-    public List<Card> loadPool() {
-        List<Card> pool = new ArrayList<Card>();
-        try {
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(POOL_CARDS_FILE_NAME))) {
-                pool = (ArrayList<Card>) in.readObject();
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            logger.severe(e.getMessage());
-            throw new RuntimeException("Failed to load game");
+    /**
+     * Writes an encoded game (see {@link #encode}) to a file. The game is written to a temporary file first, which
+     * then replaces the file, so a crash never leaves half a save behind.
+     *
+     * @param path of the file
+     * @param file buffer holding the whole file
+     * @throws IOException if writing fails
+     */
+    static void write(Path path, ByteBuffer file) throws IOException {
+        int size = file.remaining();
+        StorageEvent event = StorageEvent.start("write");
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (file.hasRemaining())
+                channel.write(file);
+            channel.force(true);
         }
-        return pool;
+        event.end(size);
+        event = StorageEvent.start("rename");
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        event.end(size);
     }
 
-    public Player loadPlayer1() {
-        Player player1 = new Player("Player 1", new LinkedList<Card>());
+    /**
+     * Saves the current game without waiting for the disk. The game is encoded right away and written by the
+     * {@link AsyncFileWriter}; the view is told how it went from the writer's thread once the file is on disk.
+     * Saves of the same storage land in the order they were made.
+     *
+     * @param model game to save
+     * @return completes once the game is saved, or exceptionally if saving fails
+     */
+    public CompletableFuture<Void> saveAsync(WarModel model) {
+        StorageEvent event = StorageEvent.start("encode");
+        ByteBuffer file;
         try {
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(PLAYER1_FILE_NAME))) {
-                player1 = (Player) in.readObject();
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            logger.severe(e.getMessage());
-            throw new RuntimeException("Failed to load game");
+            file = encode(model);
+        } catch (RuntimeException e) {
+            logger.severe(e.toString());
+            view.onGameSaveError();
+            return CompletableFuture.failedFuture(e);
         }
-        return player1;
-    }
+        event.end(file.remaining());
 
-    public Player loadPlayer2() {
-        Player player2 = new Player("Player 2", new LinkedList<Card>());
-        try {
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(PLAYER2_FILE_NAME))) {
-                player2 = (Player) in.readObject();
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            logger.severe(e.getMessage());
-            throw new RuntimeException("Failed to load game");
+        CompletableFuture<Void> save;
+        synchronized (this) {
+            // start after the previous save of this game, however that went
+            save = lastSave.handle((ignored, e) -> null)
+                    .thenCompose(ignored -> writer.write(folder.resolve(GAME_FILE_NAME), file));
+            lastSave = save;
         }
-        return player2;
+        return save.whenComplete((ignored, e) -> {
+            if (e == null) {
+                view.onGameSave();
+            } else {
+                logger.severe(e.toString());
+                view.onGameSaveError();
+            }
+        });
     }
 
-    public WarModel loadGameState() {
-        WarModel model = new WarModel(view, this);
-        try {
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(GAME_STATE_FILE_NAME))) {
-                WarModel model1 = (WarModel) in.readObject();
-                boolean gameOver = model1.isGameOver();
-                boolean war = model1.isWar();
+    /**
+     * Encodes a game into the save file format.
+     *
+     * @param model game to encode
+     * @return buffer holding the whole file, ready to be written
+     */
+    ByteBuffer encode(WarModel model) {
+        if (model.getPlayer(true) == null)
+            throw new IllegalStateException("No game to save");
+        byte[] name1 = model.getPlayer(true).getName().getBytes(StandardCharsets.UTF_8);
+        byte[] name2 = model.getPlayer(false).getName().getBytes(StandardCharsets.UTF_8);
+        if (name1.length > MAX_NAME_BYTES || name2.length > MAX_NAME_BYTES)
+            throw new IllegalStateException("Player name too long");
 
-                model.setIsGameOver(gameOver);
-                model.setIsWar(war);
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            logger.severe(e.getMessage());
-            throw new RuntimeException("Failed to load game");
-        }
-        return model;
+        // payload
+        int length = NAMES_OFFSET + 4 + name1.length + name2.length;
+        ByteBuffer file = ByteBuffer.allocate(HEADER_SIZE + length);
+        byte[] state = new byte[HeadlessGame.STATE_SIZE];
+        model.toHeadless(false).writeState(state, 0);
+        file.position(HEADER_SIZE);
+        file.put(state);
+        file.put(ordinalOf(view.getMobilisedCard(true)));
+        file.put(ordinalOf(view.getMobilisedCard(false)));
+        file.putShort((short) name1.length).put(name1);
+        file.putShort((short) name2.length).put(name2);
+
+        // header
+        CRC32C crc = new CRC32C();
+        crc.update(file.array(), HEADER_SIZE, length);
+        file.putInt(0, MAGIC);
+        file.putShort(4, VERSION);
+        file.putShort(6, (short) 0);
+        file.putInt(8, length);
+        file.putInt(12, (int) crc.getValue());
+        file.position(0);
+        return file;
     }
 
-    public Card loadMobilisedCard1() {
-        try {
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(MOBILISED_CARD1_FILE_NAME))) {
-                return (Card) in.readObject();
+    /**
+     * Loads the saved game into the model and the view. Nothing is changed if the file is missing or corrupt.
+     *
+     * @param model to load the game into
+     * @throws CorruptSaveException if the file is not a valid save
+     * @throws IOException          if the file cannot be read
+     */
+    public void load(WarModel model) throws IOException {
+        try (FileChannel channel = FileChannel.open(folder.resolve(GAME_FILE_NAME), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+                throw new CorruptSaveException("Save file has the wrong size");
+            StorageEvent event = StorageEvent.start("read");
+            ByteBuffer file = ByteBuffer.allocate((int) channel.size());
+            while (file.hasRemaining()) {
+                if (channel.read(file) < 0)
+                    throw new CorruptSaveException("Save file is truncated");
             }
-        } catch (IOException | ClassNotFoundException e) {
-            logger.severe(e.getMessage());
-            throw new RuntimeException("Failed to load game");
+            file.flip();
+            event.end(file.limit());
+            decode(file, model);
+        } catch (IOException e) {
+            logger.severe(e.toString());
+            throw e;
         }
     }
 
-    public Card loadMobilisedCard2() {
-        try {
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(MOBILISED_CARD2_FILE_NAME))) {
-                return (Card) in.readObject();
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            logger.severe(e.getMessage());
-            throw new RuntimeException("Failed to load game");
+    /**
+     * Verifies and decodes a save file into the model and the view.
+     *
+     * @param file  buffer holding the whole file
+     * @param model to load the game into
+     * @throws CorruptSaveException if the file is not a valid save
+     */
+    void decode(ByteBuffer file, WarModel model) throws CorruptSaveException {
+        // check the header and the checksum before looking at the payload
+        StorageEvent event = StorageEvent.start("verify");
+        if (file.getInt(0) != MAGIC)
+            throw new CorruptSaveException("Not a save file");
+        if (file.getShort(4) != VERSION)
+            throw new CorruptSaveException("Unsupported save file version " + file.getShort(4));
+        if (file.getShort(6) != 0)
+            throw new CorruptSaveException("Save file has an invalid header");
+        int length = file.getInt(8);
+        if (length != file.limit() - HEADER_SIZE || length < NAMES_OFFSET + 4)
+            throw new CorruptSaveException("Save file is truncated");
+        CRC32C crc = new CRC32C();
+        crc.update(file.duplicate().position(HEADER_SIZE));
+        if ((int) crc.getValue() != file.getInt(12))
+            throw new CorruptSaveException("Save file checksum does not match");
+        event.end(file.limit());
+        event = StorageEvent.start("decode");
+
+        // game state: player 1's deck, the pool and player 2's deck, then sizes and flags
+        int n = Card.STANDARD_DECK_SIZE, p = HEADER_SIZE;
+        int size1 = file.get(p + n), poolSize = file.get(p + n + 1), flags = file.get(p + n + 2);
+        if (size1 < 0 || poolSize < 0 || size1 + poolSize > n)
+            throw new CorruptSaveException("Save file has an invalid game state");
+        long seen = 0;
+        for (int i = 0; i < n; i++) {
+            int ordinal = file.get(p + i);
+            if (ordinal < 0 || ordinal >= n || (seen & 1L << ordinal) != 0)
+                throw new CorruptSaveException("Save file has an invalid deck");
+            seen |= 1L << ordinal;
         }
+        int drawn1 = checkOrdinal(file.get(p + n + 4)), drawn2 = checkOrdinal(file.get(p + n + 5));
+        int mobilised1 = checkOrdinal(file.get(p + MOBILISED_OFFSET));
+        int mobilised2 = checkOrdinal(file.get(p + MOBILISED_OFFSET + 1));
+        int nameOffset = p + NAMES_OFFSET;
+        String name1 = readName(file, nameOffset);
+        String name2 = readName(file, nameOffset + 2 + (file.getShort(nameOffset) & 0xffff));
+
+        // everything checks out, build the game
+        PersistentDeck deck1 = PersistentDeck.ofOrdinals(file, p, size1);
+        PersistentDeck pool = PersistentDeck.ofOrdinals(file, p + size1, poolSize);
+        PersistentDeck deck2 = PersistentDeck.ofOrdinals(file, p + size1 + poolSize, n - size1 - poolSize);
+        model.setPlayer(new Player(name1, deck1), true);
+        model.setPlayer(new Player(name2, deck2), false);
+        model.setPool(pool);
+        model.setIsWar((flags & HeadlessGame.FLAG_WAR) != 0);
+        model.setIsMobilizing((flags & HeadlessGame.FLAG_MOBILIZING) != 0);
+        model.setIsGameOver((flags & HeadlessGame.FLAG_GAME_OVER) != 0);
+        model.setCurrentlyDrawnCard(cardOf(drawn1), true);
+        model.setCurrentlyDrawnCard(cardOf(drawn2), false);
+        view.setMobilisedCard(true, cardOf(mobilised1));
+        view.setMobilisedCard(false, cardOf(mobilised2));
+        event.end(file.limit());
     }
 
-    public Card loadCurrentlyDrawnCard1() {
-        try {
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(CURRENTLY_DRAWN_CARD1_FILE_NAME))) {
-                return (Card) in.readObject();
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            logger.severe(e.getMessage());
-            throw new RuntimeException("Failed to load game");
-        }
+    private static byte ordinalOf(Card card) {
+        return (byte) (card == null ? HeadlessGame.NO_CARD : card.ordinal());
     }
 
-    public Card loadCurrentlyDrawnCard2() {
-        try {
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(CURRENTLY_DRAWN_CARD2_FILE_NAME))) {
-                return (Card) in.readObject();
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            logger.severe(e.getMessage());
-            throw new RuntimeException("Failed to load game");
-        }
+    private static int checkOrdinal(int ordinal) throws CorruptSaveException {
+        if (ordinal < HeadlessGame.NO_CARD || ordinal >= Card.STANDARD_DECK_SIZE)
+            throw new CorruptSaveException("Save file has an invalid card");
+        return ordinal;
+    }
+
+    private static Card cardOf(int ordinal) {
+        return ordinal == HeadlessGame.NO_CARD ? null : Card.fromOrdinal(ordinal);
+    }
+
+    private static String readName(ByteBuffer file, int offset) throws CorruptSaveException {
+        if (offset + 2 > file.limit())
+            throw new CorruptSaveException("Save file is truncated");
+        int length = file.getShort(offset) & 0xffff;
+        if (offset + 2 + length > file.limit())
+            throw new CorruptSaveException("Save file is truncated");
+        byte[] bytes = new byte[length];
+        file.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
-}
\ No newline at end of file
+}
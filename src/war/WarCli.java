@@ -0,0 +1,178 @@
+package war;
+
+import war.sim.BatchRunner;
+import war.sim.Deals;
+import war.sim.GameHistogram;
+import war.sim.ParallelRunner;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the command line entry point for simulating games without a display. Games are played by the
+ * {@link WarModel} rules (see {@link HeadlessGame}) on a {@link ParallelRunner}, in chunks of game indexes dealt by
+ * {@link Deals}, so the same seed always gives the same games. Prints throughput and a summary, and can write
+ * one line per game to a CSV file.
+ * <p>
+ * Exits with status 0 if every game ended (or after printing the usage for --help), 1 if any game hit the step
+ * limit, 2 for invalid arguments and 3 if the simulation failed.
+ *
+ * @author Komron Valijonov
+ */
+public final class WarCli {
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java war.WarCli [options]",
+            "  --games N          games to play (default 100000)",
+            "  --threads N        threads to play on (default: available processors)",
+            "  --seed N           seed for the deals (default: random)",
+            "  --max-steps N      steps after which a game counts as not ending (default 50000)",
+            "  --random-pickup    winners pick up the pool in random order instead of the order played",
+            "  --out FILE         write game,winner,turns,wars,steps for every game to a CSV file",
+            "  --help             print this message");
+    private static final int CHUNK = 1_000;
+
+    private long games = 100_000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = new SplittableRandom().nextLong();
+    private long maxSteps = 50_000;
+    private boolean randomPickup;
+    private File out;
+
+    private WarCli() {
+    }
+
+    public static void main(String[] args) {
+        WarCli cli = new WarCli();
+        try {
+            if (!cli.parse(args)) {
+                System.out.println("Simulates games of War without a display.");
+                System.out.println(USAGE);
+                System.exit(0);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            System.exit(cli.run());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            System.err.println("Simulation failed: " + e);
+            System.exit(3);
+        }
+    }
+
+    /**
+     * Reads the options.
+     *
+     * @return false if only the usage was asked for
+     */
+    private boolean parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--random-pickup")) {
+                randomPickup = true;
+                continue;
+            }
+            if (option.equals("--help") || option.equals("-h"))
+                return false;
+            if (!option.matches("--(games|threads|seed|max-steps|out)"))
+                throw new IllegalArgumentException("Unknown option " + option);
+            if (i + 1 == args.length)
+                throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--games":
+                        games = Long.parseLong(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--max-steps":
+                        maxSteps = Long.parseLong(value);
+                        break;
+                    default:
+                        out = new File(value);
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for " + option + ": " + value);
+            }
+        }
+        if (games < 0 || threads < 1 || maxSteps < 1)
+            throw new IllegalArgumentException("Games, threads and steps must be positive");
+        return true;
+    }
+
+    private int run() throws IOException, InterruptedException {
+        Chunk total = new Chunk(null);
+        long start = System.nanoTime();
+        try (Writer csv = out == null ? null : new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(out), StandardCharsets.UTF_8), 1 << 16)) {
+            if (csv != null)
+                csv.write("game,winner,turns,wars,steps\n");
+
+            // chunks are merged in order, so the CSV is in game order
+            ParallelRunner.runChunks("war-cli", threads, games, CHUNK, (from, to) -> play(from, to, csv != null),
+                    chunk -> {
+                        total.histogram.merge(chunk.histogram);
+                        total.turns += chunk.turns;
+                        total.steps += chunk.steps;
+                        if (csv != null)
+                            csv.append(chunk.lines);
+                    });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(total.histogram);
+        System.out.printf("%d games, %d turns, %d steps in %.2f s on %d threads: %.0f games/s, %.0f turns/s%n",
+                games, total.turns, total.steps, seconds, threads, games / seconds, total.turns / seconds);
+        System.out.printf("seed %d, max steps %d, %s pickup%n", seed, maxSteps, randomPickup ? "random" : "in order");
+        if (total.histogram.getUnfinished() > 0) {
+            System.err.println(total.histogram.getUnfinished() + " games did not end within " + maxSteps + " steps");
+            return 1;
+        }
+        return 0;
+    }
+
+    private Chunk play(long from, long to, boolean lines) {
+        HeadlessGame game = new HeadlessGame();
+        byte[] deck = new byte[Card.STANDARD_DECK_SIZE];
+        Chunk chunk = new Chunk(lines ? new StringBuilder((int) (to - from) * 32) : null);
+        for (long g = from; g < to; g++) {
+            SplittableRandom random = Deals.random(seed, g);
+            Deals.reset(deck);
+            Deals.shuffle(deck, random);
+            game.deal(deck, 0);
+            game.setRandomPickup(randomPickup ? random : null);
+            int winner = game.playOut(maxSteps);
+            chunk.histogram.add(game);
+            chunk.turns += game.getTurns();
+            chunk.steps += game.getSteps();
+            if (lines) {
+                chunk.lines.append(g).append(',').append(winner).append(',').append(game.getTurns()).append(',')
+                        .append(game.getWars()).append(',').append(game.getSteps()).append('\n');
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * The results of a chunk of games.
+     */
+    private static final class Chunk {
+        private final GameHistogram histogram = new GameHistogram(BatchRunner.BUCKET_WIDTH, BatchRunner.BUCKETS);
+        private final StringBuilder lines;
+        private long turns, steps;
+
+        Chunk(StringBuilder lines) {
+            this.lines = lines;
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package war;
 
+import war.event.TurnEvent;
+import war.event.TurnEventBus;
+
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 
 /**
@@ -17,13 +22,20 @@ public class WarModel implements Serializable {
     private static final long serialVersionUID = 1L;
 
     private transient final IWarView view;
-    private List<Card> pool = new ArrayList<>();  // cards in the pool (Cards that are currently in the middle of a turn)
+    private PersistentDeck pool = PersistentDeck.empty();  // cards in the pool (Cards that are currently in the middle of a turn)
     private Player player1, player2;
     private boolean gameOver = true;  // true if the game is over
     private boolean war = false;  // true if the game is in a state of war (the war state is when two cards are equal)
+    private boolean mobilizing = false;  // true after a tie until the players draw their face down cards
+    private transient int endedWarDepth;  // wars in a row the last turn ended, 0 if it was no war
     private transient StorageModel storage;
     private Card currentlyDrawnCard1;
     private Card currentlyDrawnCard2;
+    private transient TurnEventBus events;  // optional asynchronous listeners (journal, metrics, ...)
+    private transient GameVersion version;  // state after the last action, links back to the start of the game
+    private transient Deque<GameVersion> undone;  // versions to redo, most recent first, created when first needed
+    private transient DealGenerator deals;  // shuffles new games, created when first needed
+    private transient WriteAheadLog journal;  // commands are appended here before they are carried out
 
     public Card getCurrentlyDrawnCard(boolean p1) {
         return p1 ? currentlyDrawnCard1 : currentlyDrawnCard2;
@@ -47,29 +59,126 @@ public class WarModel implements Serializable {
         this.storage = storage;
     }
 
+    /**
+     * Constructs a model that continues from the current state of another model, for "what-if" play.
+     * Both models share the history up to this point but do not affect each other afterwards.
+     *
+     * @param view    to notify as game progresses (MVC)
+     * @param storage to save and load games with
+     * @param from    model to branch from
+     */
+    public WarModel(IWarView view, StorageModel storage, WarModel from) {
+        this(view, storage);
+        if (from.version == null)
+            return;
+        player1 = new Player(from.player1.getName(), from.player1.getDeck());
+        player2 = new Player(from.player2.getName(), from.player2.getDeck());
+        restore(from.version);
+    }
+
+    /**
+     * Sets the generator new games are dealt from, for example a seeded one to replay the same games.
+     *
+     * @param deals generator to deal from
+     */
+    public void setDealGenerator(DealGenerator deals) {
+        this.deals = deals;
+    }
+
+    private DealGenerator getDealGenerator() {
+        if (deals == null)
+            deals = new DealGenerator();
+        return deals;
+    }
+
+    /**
+     * Sets the write-ahead log the model appends its commands to, so the game can be recovered after a crash.
+     * Recover from the log first (see {@link WriteAheadLog#recover}).
+     *
+     * @param journal log to append to or null to stop logging
+     */
+    public void setJournal(WriteAheadLog journal) {
+        this.journal = journal;
+    }
+
+    private void journal(byte command, byte[] payload) {
+        if (journal != null)
+            journal.append(this, command, payload);
+    }
+
+    /**
+     * Sets the bus the model publishes its events to. With a bus, the view hears about play (game start, turns, wars,
+     * game over) from the bus only, so the model never waits for it; saving, loading and restoring are still told
+     * to the view directly.
+     *
+     * @param events bus to publish to or null to notify the view directly
+     */
+    public void setEventBus(TurnEventBus events) {
+        this.events = events;
+    }
+
+    /**
+     * Publishes an event to the bus if there is one. This is all the model does for asynchronous listeners.
+     *
+     * @return false if there is no bus and the view must be notified directly
+     */
+    private boolean publish(TurnEvent.Type type, Card card1, Card card2, Player winner) {
+        if (events == null)
+            return false;
+        events.publish(type,
+                card1 == null ? TurnEvent.NO_CARD : card1.ordinal(),
+                card2 == null ? TurnEvent.NO_CARD : card2.ordinal(),
+                winner == null ? TurnEvent.NO_WINNER : winner == player1 ? 1 : 2,
+                winner == null ? null : winner.getName(),
+                player1.cardsLeft(), player2.cardsLeft(), pool.size());
+        return true;
+    }
+
     /**
      * Clears current game and starts a new one.
      */
     public void newGame() {
+        // deal a shuffled standard deck of cards (52 cards), logged so the same game can be dealt again
+        byte[] deal = new byte[Card.STANDARD_DECK_SIZE];
+        getDealGenerator().next(deal, 0);
+        journal(WriteAheadLog.NEW_GAME, DealGenerator.encode(deal, 0).getBytes(StandardCharsets.US_ASCII));
+        newGame(deal);
+    }
+
+    /**
+     * Clears current game and starts a new one with the given deal.
+     *
+     * @param deal card ordinals, player 1 gets the first half and player 2 the second half
+     */
+    void newGame(byte[] deal) {
+        ModelEvent event = new ModelEvent.NewGame();
+        event.begin();
+
         // set or reset to the initial state
         gameOver = false;
         war = false;
-        pool.clear();
+        mobilizing = false;
+        pool = pool.cleared();
+        endedWarDepth = 0;
+        currentlyDrawnCard1 = currentlyDrawnCard2 = null;
 
-        // create a standard deck of cards (52 cards)
-        List<Card> deck = Card.all();
-
-        // shuffle (randomize) the deck and split it in half for each player
-        Collections.shuffle(deck);
-        LinkedList<Card> deck1 = new LinkedList<>(deck.subList(0, deck.size() / 2));
-        LinkedList<Card> deck2 = new LinkedList<>(deck.subList(deck.size() / 2, deck.size()));
+        // split the deck in half for each player
+        ByteBuffer ordinals = ByteBuffer.wrap(deal);
+        PersistentDeck deck1 = PersistentDeck.ofOrdinals(ordinals, 0, deal.length / 2);
+        PersistentDeck deck2 = PersistentDeck.ofOrdinals(ordinals, deal.length / 2, deal.length / 2);
 
         // initialize the players
         player1 = new Player("Player 1", deck1);
         player2 = new Player("Player 2", deck2);
 
+        // a new game starts a new history
+        version = null;
+        record();
+
         // notify view
-        view.onGameStart();
+        if (!publish(TurnEvent.Type.GAME_START, null, null, null))
+            view.onGameStart();
+        event.commit(this);
     }
 
     /**
@@ -93,6 +202,14 @@ public class WarModel implements Serializable {
      * Starts a new turn.
      */
     public void nextTurn() {
+        ModelEvent event = new ModelEvent.NextTurn();
+        event.begin();
+        journal(WriteAheadLog.DRAW, null);
+        playTurn();
+        event.commit(this);
+    }
+
+    private void playTurn() {
         // make sure the game can continue
         if (!gameContinues())
             return;
@@ -102,15 +219,15 @@ public class WarModel implements Serializable {
         Card card2 = player2.drawCard();
 
         // add cards to pool (middle of the table)
-        pool.add(card1);
-        pool.add(card2);
+        pool = pool.add(card1).add(card2);
 
         // set the drawn cards to the view
         setCurrentlyDrawnCard(card1, true);
         setCurrentlyDrawnCard(card2, false);
 
         // notify view of the turn
-        view.onTurnStart(card1, card2);
+        if (!publish(TurnEvent.Type.TURN_START, card1, card2, null))
+            view.onTurnStart(card1, card2);
 
         // compare cards
         int diff = card1.compareTo(card2);
@@ -128,29 +245,45 @@ public class WarModel implements Serializable {
             // make sure the game can continue (both players have cards)
             if (!gameContinues())
                 return;
-            view.onWarStart();
             war = true;
+            mobilizing = true;
+            record();
+            if (!publish(TurnEvent.Type.WAR_START, card1, card2, null))
+                view.onWarStart();
             return;
         }
 
+        // every war put two cards face up and two face down into the pool, besides the two cards of this turn
+        endedWarDepth = (pool.size() - 2) / 4;
+
         // award pool to winner and clear it
         winner.addCards(pool);
-        pool.clear();
+        pool = pool.cleared();
 
         // end war if it was in progress
-        if (war) {
-            war = false;
+        boolean warEnded = war;
+        war = false;
+        record();
+        if (warEnded && !publish(TurnEvent.Type.WAR_END, card1, card2, winner))
             view.onWarEnd();
-        }
 
         // notify view of the end of the turn
-        view.onTurnEnd(card1, card2, winner);
+        if (!publish(TurnEvent.Type.TURN_END, card1, card2, winner))
+            view.onTurnEnd(card1, card2, winner);
     }
 
     /**
      * Flips a card face down for each player to prepare for war.
      */
     public void prepareForWar() {
+        ModelEvent event = new ModelEvent.PrepareForWar();
+        event.begin();
+        journal(WriteAheadLog.MOBILIZE, null);
+        mobilize();
+        event.commit(this);
+    }
+
+    private void mobilize() {
         // check if the game can continue and if there is a war in progress
         if (!war || !gameContinues())
             return;
@@ -163,11 +296,17 @@ public class WarModel implements Serializable {
         card2.setFaceUp(false);
 
         // add cards to the pool
-        pool.add(card1);
-        pool.add(card2);
+        pool = pool.add(card1).add(card2);
+        mobilizing = false;
+        record();
+
+        // the face down cards are part of a save, so the view gets them at once even when it hears of the war later
+        view.setMobilisedCard(true, card1);
+        view.setMobilisedCard(false, card2);
 
         // notify view
-        view.onWarPreparation(card1, card2);
+        if (!publish(TurnEvent.Type.WAR_PREPARATION, card1, card2, null))
+            view.onWarPreparation(card1, card2);
     }
 
     /**
@@ -176,8 +315,13 @@ public class WarModel implements Serializable {
      * @param winner player that still has cards
      */
     public void endGame(Player winner) {
+        ModelEvent event = new ModelEvent.EndGame();
+        event.begin();
         gameOver = true;
-        view.onGameOver(winner);
+        record();
+        if (!publish(TurnEvent.Type.GAME_OVER, null, null, winner))
+            view.onGameOver(winner);
+        event.commit(this);
     }
 
     /**
@@ -216,14 +360,45 @@ public class WarModel implements Serializable {
         this.war = war;
     }
 
+    /**
+     * Returns true after a tie, until the players have drawn their face down cards with {@link #prepareForWar()}.
+     *
+     * @return true if the next action is to mobilize
+     */
+    public boolean isMobilizing() {
+        return mobilizing;
+    }
+
+    public void setIsMobilizing(boolean mobilizing) {
+        this.mobilizing = mobilizing;
+    }
+
+    /**
+     * Returns a copy of the cards in the pool, in the order they were added.
+     *
+     * @return cards in the pool
+     */
     public List<Card> getPool() {
-        return pool;
+        return pool.toList();
     }
 
     public void setPool(List<Card> pool) {
+        this.pool = PersistentDeck.of(pool);
+    }
+
+    public void setPool(PersistentDeck pool) {
         this.pool = pool;
     }
 
+    /**
+     * Returns the number of cards in the pool.
+     *
+     * @return pool size
+     */
+    public int getPoolSize() {
+        return pool.size();
+    }
+
     public void setPlayer(Player player, boolean p1) {
         if (p1)
             this.player1 = player;
@@ -231,21 +406,143 @@ public class WarModel implements Serializable {
             this.player2 = player;
     }
 
+    /**
+     * Records the current state as the newest version of the game. Anything that was undone can no longer be redone.
+     */
+    private void record() {
+        version = new GameVersion(version, player1.getDeck(), player2.getDeck(), pool,
+                currentlyDrawnCard1, currentlyDrawnCard2, gameOver, war, mobilizing);
+        getUndone().clear();
+    }
+
+    private Deque<GameVersion> getUndone() {
+        // not set in a deserialized model
+        if (undone == null)
+            undone = new ArrayDeque<>();
+        return undone;
+    }
+
+    /**
+     * Sets the current state to the given version without touching the history.
+     */
+    private void restore(GameVersion version) {
+        this.version = version;
+        endedWarDepth = 0;
+        player1.setDeck(version.getDeck(true));
+        player2.setDeck(version.getDeck(false));
+        pool = version.getPool();
+        currentlyDrawnCard1 = version.getDrawnCard(true);
+        currentlyDrawnCard2 = version.getDrawnCard(false);
+        gameOver = version.isGameOver();
+        war = version.isWar();
+        mobilizing = version.isMobilizing();
+    }
+
+    /**
+     * Returns the number of wars in a row of the current turn: the wars so far while a war is going on, otherwise the
+     * wars the last turn ended (0 if it ended none).
+     *
+     * @return war depth
+     */
+    int getWarDepth() {
+        // after a tie the pool holds two cards face up for every war and two face down for every war but the last,
+        // until the players mobilize
+        return war ? (pool.size() + 2) / 4 : endedWarDepth;
+    }
+
+    /**
+     * Returns the number of actions (draw, mobilize, game over) since the game was started or loaded.
+     *
+     * @return actions taken
+     */
+    public int getStep() {
+        return version == null ? 0 : version.getStep();
+    }
+
+    /**
+     * Returns a {@link HeadlessGame} copy of this game, either as it is now or as it was when it was started
+     * or loaded. Playing {@link #getStep()} steps from the start leads to the current state.
+     *
+     * @param fromStart true to copy the state at the start of the game
+     * @return headless copy of the game
+     */
+    public HeadlessGame toHeadless(boolean fromStart) {
+        GameVersion v = version;
+        while (fromStart && v.getPrevious() != null)
+            v = v.getPrevious();
+        HeadlessGame game = new HeadlessGame();
+        game.load(v);
+        return game;
+    }
+
+    /**
+     * Returns true if there is an action that can be undone.
+     *
+     * @return true if undo is possible
+     */
+    public boolean canUndo() {
+        return version != null && version.getPrevious() != null;
+    }
+
+    /**
+     * Returns true if there is an undone action that can be redone.
+     *
+     * @return true if redo is possible
+     */
+    public boolean canRedo() {
+        return !getUndone().isEmpty();
+    }
+
+    /**
+     * Goes back to the state before the last action (draw, mobilize or game over).
+     */
+    public void undo() {
+        if (!canUndo())
+            return;
+        getUndone().push(version);
+        restore(version.getPrevious());
+        journal(WriteAheadLog.SNAPSHOT, null);
+        view.onGameRestore();
+    }
+
+    /**
+     * Redoes the last undone action.
+     */
+    public void redo() {
+        if (!canRedo())
+            return;
+        restore(getUndone().pop());
+        journal(WriteAheadLog.SNAPSHOT, null);
+        view.onGameRestore();
+    }
+
+    /**
+     * Saves the game without waiting for the disk. The view is told once the game is saved.
+     */
     public void saveGame() {
-        storage.save(this);
+        storage.saveAsync(this);
     }
 
+    /**
+     * Loads the saved game. The view is told if there is no valid save, in which case the current game goes on.
+     */
     public void loadGame() {
-        WarModel model = storage.loadGameState();
-        this.setIsGameOver(model.isGameOver());
-        this.setIsWar(model.isWar());
-        this.setPlayer(storage.loadPlayer1(), true);
-        this.setPlayer(storage.loadPlayer2(), false);
-        this.setPool(storage.loadPool());
-        this.view.setMobilisedCard(true, storage.loadMobilisedCard1());
-        this.view.setMobilisedCard(false, storage.loadMobilisedCard2());
-        this.setCurrentlyDrawnCard(storage.loadCurrentlyDrawnCard1(), true);
-        this.setCurrentlyDrawnCard(storage.loadCurrentlyDrawnCard2(), false);
+        try {
+            storage.load(this);
+        } catch (IOException e) {
+            view.onGameLoadError();
+            return;
+        }
+        resetHistory();
+        journal(WriteAheadLog.SNAPSHOT, null);
         this.view.onGameLoad();
     }
+
+    /**
+     * Starts a new history at the current state, after it was set from outside the model.
+     */
+    void resetHistory() {
+        version = null;
+        record();
+    }
 }
@@ -0,0 +1,395 @@
+package war;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a write-ahead log of the commands given to a {@link WarModel}, so a game survives the program being
+ * killed. Every command (new game, draw, mobilize) is appended with a sequence number before the model carries it out,
+ * and the log is written and forced to disk in batches by its own thread, so the model never waits for the disk.
+ * A crash loses at most the commands of the last batch. A batch that cannot be written is kept and tried again with
+ * the next one, and a record torn by a failed write is cut off before anything else is appended.
+ * <p>
+ * Every record is its payload length, a CRC32C, the sequence number, the command and the payload. A new game carries
+ * its deal (see {@link DealGenerator#encode}), so replaying it deals the same cards. The log is compacted every so
+ * many commands, and whenever the game changes other than by a command (loading, undo, redo): the current game is
+ * written in the save file format (see {@link StorageModel}) as the first record of a new log, which replaces the old
+ * one. Recovering reads the snapshot and replays the commands after it, so it never replays more than one interval.
+ *
+ * @author Komron Valijonov
+ */
+public class WriteAheadLog implements Closeable {
+    public static final String DEFAULT_PATH = "./war-saves/game.wal";
+    public static final long DEFAULT_FLUSH_MILLIS = 50;
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1000;
+    private static final Logger logger = Logger.getLogger(WriteAheadLog.class.getName());
+    private static final int RECORD_HEADER = 17;  // payload length, checksum, sequence number, command
+    private static final int MAX_PAYLOAD = 1 << 20;
+
+    // commands
+    static final byte SNAPSHOT = 0;
+    static final byte NEW_GAME = 1;
+    static final byte DRAW = 2;
+    static final byte MOBILIZE = 3;
+
+    private final Path path;
+    private final StorageModel storage;
+    private final long flushMillis;
+    private final int snapshotInterval;
+    private final Object io = new Object();  // held while writing, before this when both are needed
+    private final Thread writer;
+    private FileChannel channel;  // guarded by io
+
+    // guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(4096);  // records not written yet
+    private ByteBuffer snapshot;  // starts a new log at the next write, replacing everything before it
+    private long sequence;  // number of the last command appended
+    private int sinceSnapshot;  // commands appended since the last snapshot
+    private boolean torn;  // a failed write could not be cut off, only a snapshot may be written after it
+    private boolean closed;
+
+    /**
+     * Opens a log, creating it if there is none, with the default batch and snapshot intervals.
+     *
+     * @param path    of the log file
+     * @param storage to encode and decode snapshots with
+     * @throws IOException if the log cannot be opened
+     */
+    public WriteAheadLog(Path path, StorageModel storage) throws IOException {
+        this(path, storage, DEFAULT_FLUSH_MILLIS, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Opens a log, creating it if there is none.
+     *
+     * @param path             of the log file
+     * @param storage          to encode and decode snapshots with
+     * @param flushMillis      how often the commands appended are written and forced to disk
+     * @param snapshotInterval commands after which the log is compacted
+     * @throws IOException if the log cannot be opened
+     */
+    public WriteAheadLog(Path path, StorageModel storage, long flushMillis, int snapshotInterval) throws IOException {
+        if (flushMillis < 1 || snapshotInterval < 1)
+            throw new IllegalArgumentException("Intervals must be positive");
+        this.path = path;
+        this.storage = storage;
+        this.flushMillis = flushMillis;
+        this.snapshotInterval = snapshotInterval;
+        Path folder = path.toAbsolutePath().getParent();
+        if (folder != null)
+            Files.createDirectories(folder);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        writer = new Thread(this::write, "war-wal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens the log at {@value #DEFAULT_PATH}, next to the save file.
+     *
+     * @param storage to encode and decode snapshots with
+     * @return log
+     * @throws IOException if the log cannot be opened
+     */
+    public static WriteAheadLog open(StorageModel storage) throws IOException {
+        return new WriteAheadLog(Paths.get(DEFAULT_PATH), storage);
+    }
+
+    /**
+     * Brings the model up to the last command in the log: loads the snapshot and replays the commands after it.
+     * Must be called before the log is given to the model (see {@link WarModel#setJournal}), so the replayed commands
+     * are not appended again. Anything after the last valid record, such as a record torn by a crash, is dropped.
+     *
+     * @param model to recover the game into
+     * @return true if the log held a game, false if the model was left as it was
+     * @throws IOException if the log cannot be read
+     */
+    public boolean recover(WarModel model) throws IOException {
+        synchronized (io) {
+            synchronized (this) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE)
+                    throw new IOException("Write-ahead log too large");
+                ByteBuffer log = ByteBuffer.allocate((int) size);
+                while (log.hasRemaining()) {
+                    if (channel.read(log, log.position()) < 0)
+                        throw new IOException("Write-ahead log ended early");
+                }
+                log.flip();
+
+                CRC32C crc = new CRC32C();
+                int valid = 0, replayed = 0;
+                long expected = -1;
+                while (log.limit() - valid >= RECORD_HEADER) {
+                    int length = log.getInt(valid), checksum = log.getInt(valid + 4);
+                    if (length < 0 || length > MAX_PAYLOAD || length > log.limit() - valid - RECORD_HEADER)
+                        break;
+                    int end = valid + RECORD_HEADER + length;
+                    crc.reset();
+                    crc.update(log.duplicate().limit(end).position(valid + 8));
+                    long number = log.getLong(valid + 8);
+                    byte command = log.get(valid + 16);
+                    if ((int) crc.getValue() != checksum || (expected >= 0 && number != expected))
+                        break;
+                    ByteBuffer payload = log.duplicate().limit(end).position(valid + RECORD_HEADER).slice();
+                    if (!replay(model, command, payload, valid == 0))
+                        break;
+                    sequence = number;
+                    sinceSnapshot = command == SNAPSHOT ? 0 : sinceSnapshot + 1;
+                    expected = number + 1;
+                    valid = end;
+                    replayed++;
+                }
+                if (valid < size) {
+                    logger.warning("Dropping " + (size - valid) + " bytes from the end of the write-ahead log");
+                    channel.truncate(valid);
+                    channel.force(false);
+                }
+                channel.position(valid);
+                if (replayed > 0)
+                    logger.info("Recovered the game from " + replayed + " write-ahead log records");
+                return replayed > 0 && model.getPlayer(true) != null;
+            }
+        }
+    }
+
+    /**
+     * Carries out a command from the log.
+     *
+     * @return false if the record is not valid at this point of the log
+     */
+    private boolean replay(WarModel model, byte command, ByteBuffer payload, boolean first) {
+        try {
+            switch (command) {
+                case SNAPSHOT:
+                    if (!first)
+                        return false;
+                    storage.decode(payload, model);
+                    model.resetHistory();
+                    return true;
+                case NEW_GAME:
+                    byte[] deal = new byte[Card.STANDARD_DECK_SIZE];
+                    DealGenerator.decode(StandardCharsets.US_ASCII.decode(payload).toString(), deal, 0);
+                    model.newGame(deal);
+                    return true;
+                case DRAW:
+                case MOBILIZE:
+                    if (model.getPlayer(true) == null || payload.hasRemaining())
+                        return false;
+                    if (command == DRAW)
+                        model.nextTurn();
+                    else
+                        model.prepareForWar();
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (CorruptSaveException | IllegalArgumentException e) {
+            logger.warning("Invalid write-ahead log record: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Appends a command the model is about to carry out, or with {@link #SNAPSHOT} replaces the log with the current
+     * game. Nothing is written here, the writer thread picks the record up with the next batch.
+     *
+     * @param model   the command is given to
+     * @param command one of the commands
+     * @param payload bytes that go with the command, or null
+     */
+    synchronized void append(WarModel model, byte command, byte[] payload) {
+        if (closed)
+            return;
+        if (command == SNAPSHOT || sinceSnapshot >= snapshotInterval || torn) {
+            takeSnapshot(model);
+            if (command == SNAPSHOT)
+                return;
+        }
+        int length = payload == null ? 0 : payload.length;
+        if (pending.remaining() < RECORD_HEADER + length) {
+            int capacity = Math.max(2 * pending.capacity(), pending.position() + RECORD_HEADER + length);
+            pending = ByteBuffer.allocate(capacity).put(pending.flip());
+        }
+        put(pending, ++sequence, command, payload == null ? ByteBuffer.allocate(0) : ByteBuffer.wrap(payload));
+        sinceSnapshot++;
+    }
+
+    /**
+     * Encodes the game as it is after the last command. Records not yet written are covered by the snapshot and dropped.
+     */
+    private void takeSnapshot(WarModel model) {
+        if (model.getPlayer(true) == null)
+            return;
+        ByteBuffer save;
+        try {
+            save = storage.encode(model);
+        } catch (RuntimeException e) {
+            logger.severe("Could not snapshot the game: " + e);
+            return;
+        }
+        snapshot = ByteBuffer.allocate(RECORD_HEADER + save.remaining());
+        put(snapshot, sequence, SNAPSHOT, save);
+        snapshot.flip();
+        pending.clear();
+        sinceSnapshot = 0;
+        torn = false;
+    }
+
+    private static void put(ByteBuffer log, long number, byte command, ByteBuffer payload) {
+        int start = log.position(), length = payload.remaining();
+        log.putInt(length).putInt(0).putLong(number).put(command).put(payload);
+        CRC32C crc = new CRC32C();
+        crc.update(log.array(), start + 8, RECORD_HEADER - 8 + length);
+        log.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Writes and forces to disk every command appended so far.
+     *
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        synchronized (io) {
+            ByteBuffer batch, start;
+            synchronized (this) {
+                // after a torn write only a snapshot can start the log again, the commands wait for it
+                if ((pending.position() == 0 || torn) && snapshot == null)
+                    return;
+                batch = pending.flip();
+                pending = ByteBuffer.allocate(batch.capacity());
+                start = snapshot;
+                snapshot = null;
+            }
+            try {
+                if (start != null)
+                    compact(start, batch);
+                else
+                    append(batch);
+            } catch (IOException | RuntimeException e) {
+                requeue(start, batch);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Writes a new log made of a snapshot and the commands after it next to the old one and swaps them, so a crash
+     * leaves one or the other.
+     */
+    private void compact(ByteBuffer start, ByteBuffer batch) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel compacted = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (start.hasRemaining())
+                compacted.write(start);
+            while (batch.hasRemaining())
+                compacted.write(batch);
+            compacted.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    /**
+     * Appends commands to the log.
+     */
+    private void append(ByteBuffer batch) throws IOException {
+        long end = -1;  // end of the last whole record
+        try {
+            end = channel.position();
+            while (batch.hasRemaining())
+                channel.write(batch);
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            // leave no torn record behind for the next batch to follow
+            try {
+                if (end < 0)
+                    throw e;
+                channel.truncate(end);
+                channel.position(end);
+            } catch (IOException | RuntimeException truncateFailed) {
+                synchronized (this) {
+                    torn = true;
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Puts a batch that could not be written back in front of the commands appended since, to be written with them.
+     * A snapshot taken in the meantime covers the batch, which is then dropped.
+     */
+    private synchronized void requeue(ByteBuffer start, ByteBuffer batch) {
+        if (snapshot != null)
+            return;
+        if (start != null)
+            snapshot = start.rewind();
+        batch.rewind();
+        ByteBuffer commands = ByteBuffer.allocate(Math.max(pending.capacity(), batch.remaining() + pending.position()));
+        pending = commands.put(batch).put(pending.flip());
+    }
+
+    /**
+     * Writes the commands still pending and closes the log.
+     *
+     * @throws IOException if writing or closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (io) {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void write() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    if (!closed)
+                        wait(flushMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // close() writes the rest itself
+                if (closed)
+                    return;
+            }
+            try {
+                flush();
+            } catch (IOException | RuntimeException e) {
+                logger.severe("Write-ahead log write failed, will retry: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package war.archive;
+
+import war.HeadlessGame;
+import war.WarModel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a finished game as kept in a {@link GameArchive}: the players' names, the state the game started from
+ * and the state it ended in (both in the {@link HeadlessGame#writeState} format) and how long it took. The rest of a
+ * game follows from its start, so replaying it (see {@link #replay()}) gives back every turn.
+ *
+ * @author Komron Valijonov
+ */
+public final class ArchivedGame {
+    private static final int FIXED_SIZE = 2 * HeadlessGame.STATE_SIZE + 3 * Long.BYTES + 2 * Short.BYTES;
+
+    private final String name1, name2;
+    private final byte[] start, end;
+    private final long steps, turns, wars;
+
+    private ArchivedGame(String name1, String name2, byte[] start, byte[] end, long steps, long turns, long wars) {
+        this.name1 = name1;
+        this.name2 = name2;
+        this.start = start;
+        this.end = end;
+        this.steps = steps;
+        this.turns = turns;
+        this.wars = wars;
+    }
+
+    /**
+     * Plays a game headless to the end (or the step limit) and returns it for archiving.
+     *
+     * @param name1    name of player 1
+     * @param name2    name of player 2
+     * @param game     at the state to start from, played to the end
+     * @param maxSteps most steps to play
+     * @return game to archive
+     */
+    public static ArchivedGame play(String name1, String name2, HeadlessGame game, long maxSteps) {
+        byte[] start = new byte[HeadlessGame.STATE_SIZE], end = new byte[HeadlessGame.STATE_SIZE];
+        game.writeState(start, 0);
+        game.playOut(maxSteps);
+        game.writeState(end, 0);
+        return new ArchivedGame(name1, name2, start, end, game.getSteps(), game.getTurns(), game.getWars());
+    }
+
+    /**
+     * Returns the game of a model, from its start up to its current state, for archiving.
+     *
+     * @param model game to archive, not changed
+     * @return game to archive
+     */
+    public static ArchivedGame of(WarModel model) {
+        HeadlessGame game = model.toHeadless(true);
+        return play(model.getPlayer(true).getName(), model.getPlayer(false).getName(), game, model.getStep());
+    }
+
+    /**
+     * Returns a headless game at the start of this game, to replay it.
+     *
+     * @return new game at the start state
+     */
+    public HeadlessGame replay() {
+        HeadlessGame game = new HeadlessGame();
+        game.readState(start, 0);
+        return game;
+    }
+
+    /**
+     * Returns a headless game at the end of this game.
+     *
+     * @return new game at the end state
+     */
+    public HeadlessGame getEnd() {
+        HeadlessGame game = new HeadlessGame();
+        game.readState(end, 0);
+        return game;
+    }
+
+    /**
+     * Returns the name of player 1 or 2.
+     *
+     * @param p1 true for player 1
+     * @return name
+     */
+    public String getName(boolean p1) {
+        return p1 ? name1 : name2;
+    }
+
+    /**
+     * Returns the number of steps (model actions) the game took.
+     *
+     * @return steps
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns the number of turns (cards drawn face up) the game took.
+     *
+     * @return turns
+     */
+    public long getTurns() {
+        return turns;
+    }
+
+    /**
+     * Returns the number of ties in the game.
+     *
+     * @return wars
+     */
+    public long getWars() {
+        return wars;
+    }
+
+    int encodedSize() {
+        return FIXED_SIZE + name1.getBytes(StandardCharsets.UTF_8).length + name2.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    void encode(ByteBuffer buffer) {
+        buffer.put(start).put(end).putLong(steps).putLong(turns).putLong(wars);
+        putName(buffer, name1);
+        putName(buffer, name2);
+    }
+
+    static ArchivedGame decode(ByteBuffer buffer) {
+        byte[] start = new byte[HeadlessGame.STATE_SIZE], end = new byte[HeadlessGame.STATE_SIZE];
+        buffer.get(start).get(end);
+        long steps = buffer.getLong(), turns = buffer.getLong(), wars = buffer.getLong();
+        String name1 = getName(buffer), name2 = getName(buffer);
+        return new ArchivedGame(name1, name2, start, end, steps, turns, wars);
+    }
+
+    private static void putName(ByteBuffer buffer, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff)
+            throw new IllegalArgumentException("Name too long");
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getName(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,316 @@
+package war.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents an archive of many finished games ({@link ArchivedGame}) in a folder. Games are stored back to back in
+ * segment files of limited size, each as its length, a CRC32C and the encoded game. An index file holds the segment,
+ * offset and length of every game by id (ids count up from 0), and is kept in memory, so reading any game is a single
+ * positioned read.
+ * <p>
+ * Appends are queued and written by one thread in batches (group commit): the games of a batch are written with one
+ * write, the segment is forced to disk once, then their index entries are written and forced, and only then are the
+ * appends complete. Games that did not make it into the index before a crash are dropped when the archive is opened.
+ *
+ * @author Komron Valijonov
+ */
+public class GameArchive implements Closeable {
+    public static final long DEFAULT_SEGMENT_SIZE = 256L << 20;
+    private static final Logger logger = Logger.getLogger(GameArchive.class.getName());
+    private static final String INDEX_FILE = "index.dat";
+    private static final int RECORD_HEADER = 8;  // length, checksum
+    private static final int INDEX_ENTRY = 16;  // segment, offset, length
+    private static final int MAX_BATCH = 1024;
+    private static final Append CLOSE = new Append(null);  // queued last by close()
+
+    private final Path folder;
+    private final long segmentSize;
+    private final FileChannel index;
+    private final List<FileChannel> segments = new ArrayList<>();
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // in-memory index, guarded by this
+    private int[] segmentOf = new int[1024];
+    private long[] offsetOf = new long[1024];
+    private int[] lengthOf = new int[1024];
+    private int count;
+    private long segmentEnd;  // where the next game goes in the last segment
+
+    /**
+     * Opens an archive, creating it if the folder has none.
+     *
+     * @param folder      to keep the archive in
+     * @param segmentSize most bytes per segment file (a single bigger game gets a segment of its own)
+     * @throws IOException if the archive cannot be opened
+     */
+    public GameArchive(Path folder, long segmentSize) throws IOException {
+        this.folder = folder;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(folder);
+        index = FileChannel.open(folder.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        recover();
+        writer = new Thread(this::write, "war-archive");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Loads the index and drops whatever was written after the last indexed game.
+     */
+    private void recover() throws IOException {
+        long entries = index.size() / INDEX_ENTRY;
+        if (entries > Integer.MAX_VALUE)
+            throw new IOException("Archive index too large");
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(entries * INDEX_ENTRY, 1 << 20));
+        long position = 0;
+        while (position < entries * INDEX_ENTRY) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), entries * INDEX_ENTRY - position));
+            while (buffer.hasRemaining()) {
+                if (index.read(buffer, position + buffer.position()) < 0)
+                    throw new IOException("Archive index ended early");
+            }
+            buffer.flip();
+            while (buffer.hasRemaining())
+                addEntry(buffer.getInt(), buffer.getLong(), buffer.getInt());
+            position += buffer.limit();
+        }
+        index.truncate(entries * INDEX_ENTRY);
+        index.position(entries * INDEX_ENTRY);
+
+        int last = count == 0 ? 0 : segmentOf[count - 1];
+        segmentEnd = count == 0 ? 0 : offsetOf[count - 1] + lengthOf[count - 1];
+        for (int s = 0; s <= last; s++)
+            segments.add(openSegment(s));
+        FileChannel tail = segments.get(last);
+        if (tail.size() > segmentEnd) {
+            logger.warning("Dropping " + (tail.size() - segmentEnd) + " unindexed bytes from the archive");
+            tail.truncate(segmentEnd);
+        }
+        // a segment started after the last indexed game holds nothing that was committed
+        for (int s = last + 1; Files.exists(segmentPath(s)); s++)
+            Files.delete(segmentPath(s));
+    }
+
+    private Path segmentPath(int segment) {
+        return folder.resolve(String.format("segment-%05d.dat", segment));
+    }
+
+    private FileChannel openSegment(int segment) throws IOException {
+        return FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Queues a game to be added to the archive.
+     *
+     * @param game to add
+     * @return completes with the id of the game once it is safely on disk
+     */
+    public CompletableFuture<Long> append(ArchivedGame game) {
+        Append append = new Append(game);
+        synchronized (queue) {
+            if (closed)
+                throw new IllegalStateException("Archive is closed");
+            queue.add(append);
+        }
+        return append.result;
+    }
+
+    /**
+     * Reads a game.
+     *
+     * @param id of the game
+     * @return game
+     * @throws IOException if the game cannot be read or is corrupt
+     */
+    public ArchivedGame read(long id) throws IOException {
+        FileChannel segment;
+        long offset;
+        int length;
+        synchronized (this) {
+            if (id < 0 || id >= count)
+                throw new IndexOutOfBoundsException("No game " + id + " in an archive of " + count);
+            segment = segments.get(segmentOf[(int) id]);
+            offset = offsetOf[(int) id];
+            length = lengthOf[(int) id];
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        while (record.hasRemaining()) {
+            if (segment.read(record, offset + record.position()) < 0)
+                throw new IOException("Archive segment ended early");
+        }
+        record.flip();
+        int size = record.getInt(), checksum = record.getInt();
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate());
+        if (size != length - RECORD_HEADER || (int) crc.getValue() != checksum)
+            throw new IOException("Game " + id + " is corrupt");
+        return ArchivedGame.decode(record);
+    }
+
+    /**
+     * Returns the number of games in the archive, not counting appends still being written.
+     *
+     * @return games
+     */
+    public synchronized long size() {
+        return count;
+    }
+
+    /**
+     * Writes the games still queued and closes the archive.
+     *
+     * @throws IOException if closing the files fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (queue) {
+            if (closed)
+                return;
+            closed = true;
+            queue.add(CLOSE);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (FileChannel segment : segments)
+                segment.close();
+            index.close();
+        }
+    }
+
+    private void write() {
+        List<Append> batch = new ArrayList<>(MAX_BATCH);
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            // everything that queued up while the last batch was being forced goes into this one
+            queue.drainTo(batch, MAX_BATCH - 1);
+            // nothing is queued after the close marker
+            closing = batch.remove(CLOSE);
+            try {
+                if (!batch.isEmpty())
+                    commit(batch);
+            } catch (IOException | RuntimeException e) {
+                logger.severe("Archive append failed: " + e);
+                for (Append append : batch)
+                    append.result.completeExceptionally(e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Append> batch) throws IOException {
+        int size = 0;
+        for (Append append : batch)
+            size += RECORD_HEADER + append.game.encodedSize();
+        ByteBuffer records = ByteBuffer.allocate(size);
+        ByteBuffer entries = ByteBuffer.allocate(batch.size() * INDEX_ENTRY);
+
+        FileChannel segment;
+        int segmentNumber;
+        long offset;
+        synchronized (this) {
+            // start a new segment if the batch does not fit, unless the current one is empty
+            if (segmentEnd > 0 && segmentEnd + size > segmentSize) {
+                segments.add(openSegment(segments.size()));
+                segmentEnd = 0;
+            }
+            segmentNumber = segments.size() - 1;
+            segment = segments.get(segmentNumber);
+            offset = segmentEnd;
+        }
+
+        CRC32C crc = new CRC32C();
+        for (Append append : batch) {
+            int start = records.position();
+            records.position(start + RECORD_HEADER);
+            append.game.encode(records);
+            int length = records.position() - start;
+            crc.reset();
+            crc.update(records.array(), start + RECORD_HEADER, length - RECORD_HEADER);
+            records.putInt(start, length - RECORD_HEADER).putInt(start + 4, (int) crc.getValue());
+            entries.putInt(segmentNumber).putLong(offset + start).putInt(length);
+        }
+
+        // the games must be on disk before the index points at them
+        records.flip();
+        long position = offset;
+        while (records.hasRemaining())
+            position += segment.write(records, position);
+        segment.force(false);
+        entries.flip();
+        try {
+            while (entries.hasRemaining())
+                index.write(entries);
+            index.force(false);
+        } catch (IOException e) {
+            // leave no half written entries behind for the next batch to follow
+            long committed = size() * INDEX_ENTRY;
+            index.truncate(committed);
+            index.position(committed);
+            throw e;
+        }
+
+        long firstId;
+        synchronized (this) {
+            firstId = count;
+            entries.flip();
+            while (entries.hasRemaining())
+                addEntry(entries.getInt(), entries.getLong(), entries.getInt());
+            segmentEnd = position;
+        }
+        for (int i = 0; i < batch.size(); i++)
+            batch.get(i).result.complete(firstId + i);
+    }
+
+    private void addEntry(int segment, long offset, int length) {
+        if (count == segmentOf.length) {
+            int capacity = 2 * count;
+            segmentOf = Arrays.copyOf(segmentOf, capacity);
+            offsetOf = Arrays.copyOf(offsetOf, capacity);
+            lengthOf = Arrays.copyOf(lengthOf, capacity);
+        }
+        segmentOf[count] = segment;
+        offsetOf[count] = offset;
+        lengthOf[count] = length;
+        count++;
+    }
+
+    /**
+     * A game waiting to be written.
+     */
+    private static final class Append {
+        private final ArchivedGame game;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        Append(ArchivedGame game) {
+            this.game = game;
+        }
+    }
+}
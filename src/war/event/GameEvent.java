@@ -0,0 +1,120 @@
+package war.event;
+
+import war.Card;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents an event of a game that can be kept, unlike the reused {@link TurnEvent} slots it is copied from.
+ * Handed to the subscribers of a {@link GameEventPublisher}.
+ *
+ * @author Komron Valijonov
+ */
+public final class GameEvent {
+    private final TurnEvent.Type type;
+    private final long sequence;
+    private final int card1, card2;  // card ordinals (see Card#ordinal())
+    private final int winner;
+    private final String winnerName;
+    private final int cardsLeft1, cardsLeft2, poolSize;
+
+    /**
+     * Copies an event from the bus.
+     *
+     * @param event    slot to copy
+     * @param sequence sequence number of the event on the bus
+     */
+    public GameEvent(TurnEvent event, long sequence) {
+        this.type = event.getType();
+        this.sequence = sequence;
+        this.card1 = event.getCard(true);
+        this.card2 = event.getCard(false);
+        this.winner = event.getWinner();
+        this.winnerName = event.getWinnerName();
+        this.cardsLeft1 = event.getCardsLeft(true);
+        this.cardsLeft2 = event.getCardsLeft(false);
+        this.poolSize = event.getPoolSize();
+    }
+
+    /**
+     * Returns what happened.
+     *
+     * @return type of event
+     */
+    public TurnEvent.Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the sequence number of the event on the bus. A gap between two events a subscriber receives means the
+     * events in between were dropped.
+     *
+     * @return sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the ordinal of the card player 1 or 2 drew, or {@link TurnEvent#NO_CARD}.
+     *
+     * @param p1 true for player 1's card
+     * @return card ordinal
+     */
+    public int getCard(boolean p1) {
+        return p1 ? card1 : card2;
+    }
+
+    /**
+     * Returns the card player 1 or 2 drew as a new {@link Card}, or null if the event has no card.
+     *
+     * @param p1 true for player 1's card
+     * @return card or null
+     */
+    public Card toCard(boolean p1) {
+        int ordinal = getCard(p1);
+        return ordinal == TurnEvent.NO_CARD ? null : Card.fromOrdinal(ordinal);
+    }
+
+    /**
+     * Returns 1 if player 1 won, 2 if player 2 won or {@link TurnEvent#NO_WINNER}.
+     *
+     * @return winner of the turn or game
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Returns the name of the player who won, as it was when the event happened.
+     *
+     * @return name of the winner, or null if the event has no winner
+     */
+    public String getWinnerName() {
+        return winnerName;
+    }
+
+    /**
+     * Returns the number of cards player 1 or 2 had left after the event.
+     *
+     * @param p1 true for player 1
+     * @return cards left
+     */
+    public int getCardsLeft(boolean p1) {
+        return p1 ? cardsLeft1 : cardsLeft2;
+    }
+
+    /**
+     * Returns the number of cards in the pool after the event.
+     *
+     * @return pool size
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " " + card1 + " " + card2 + " " + winner + " " + cardsLeft1 + "/" + cardsLeft2
+                + " pool=" + poolSize;
+    }
+}
@@ -0,0 +1,83 @@
+package war.event;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a {@link Flow.Publisher} of the events of a game, for listeners that only want to follow the game
+ * (dashboards, loggers, analytics) without implementing {@link war.IWarView}. Add it to the model's
+ * {@link TurnEventBus} as a handler, and subscribe with any {@link Flow.Subscriber}; the GUI has one on its bus
+ * (see {@link war.gui.WarGui#getEventPublisher()}).
+ * <p>
+ * Every subscriber gets events as it requests them, from a buffer of limited size. Nothing ever waits for a
+ * subscriber: when a subscriber's buffer is full the event is dropped for that subscriber only, and counted.
+ * Subscribers can tell where events are missing from the gaps in {@link GameEvent#getSequence()}.
+ *
+ * @author Komron Valijonov
+ */
+public class GameEventPublisher implements TurnEventHandler, Flow.Publisher<GameEvent>, AutoCloseable {
+    private final SubmissionPublisher<GameEvent> publisher;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a publisher that delivers on the common pool with buffers of {@link Flow#defaultBufferSize()} events.
+     */
+    public GameEventPublisher() {
+        this.publisher = new SubmissionPublisher<>();
+    }
+
+    /**
+     * Creates a publisher.
+     *
+     * @param executor       to deliver events to subscribers on
+     * @param bufferCapacity most events a subscriber may fall behind before events are dropped for it
+     */
+    public GameEventPublisher(Executor executor, int bufferCapacity) {
+        this.publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super GameEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    @Override
+    public void onEvent(TurnEvent event, long sequence, boolean endOfBatch) {
+        if (!publisher.hasSubscribers())
+            return;
+        // offer never blocks, a full subscriber just misses the event
+        publisher.offer(new GameEvent(event, sequence), (subscriber, item) -> {
+            dropped.incrementAndGet();
+            return false;
+        });
+    }
+
+    /**
+     * Returns the number of events dropped because a subscriber's buffer was full, over all subscribers.
+     *
+     * @return events dropped
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of subscribers.
+     *
+     * @return subscribers
+     */
+    public int getSubscriberCount() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    /**
+     * Completes every subscriber once it has received the events already buffered for it.
+     */
+    @Override
+    public void close() {
+        publisher.close();
+    }
+}
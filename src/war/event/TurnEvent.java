@@ -0,0 +1,123 @@
+package war.event;
+
+import war.Card;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents one slot of the {@link TurnEventBus} ring buffer. Slots are allocated once when the bus is created and
+ * overwritten by the model for every event, so handlers must copy anything they want to keep after
+ * {@link TurnEventHandler#onEvent(TurnEvent, long, boolean)} returns.
+ *
+ * @author Komron Valijonov
+ */
+public final class TurnEvent {
+    public static final int NO_CARD = -1;  // ordinal used when an event carries no card
+    public static final int NO_WINNER = 0;  // winner used when an event has no winner
+
+    private Type type;
+    private int card1 = NO_CARD, card2 = NO_CARD;  // card ordinals (see Card#ordinal())
+    private int winner = NO_WINNER;  // 1 for player 1, 2 for player 2
+    private String winnerName;  // as it was when the event happened, null if there is no winner
+    private int cardsLeft1, cardsLeft2, poolSize;
+
+    TurnEvent() {
+    }
+
+    void set(Type type, int card1, int card2, int winner, String winnerName, int cardsLeft1, int cardsLeft2,
+             int poolSize) {
+        this.type = type;
+        this.card1 = card1;
+        this.card2 = card2;
+        this.winner = winner;
+        this.winnerName = winnerName;
+        this.cardsLeft1 = cardsLeft1;
+        this.cardsLeft2 = cardsLeft2;
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Returns what happened.
+     *
+     * @return type of event
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the ordinal of the card player 1 or 2 drew, or {@link #NO_CARD}.
+     *
+     * @param p1 true for player 1's card
+     * @return card ordinal
+     */
+    public int getCard(boolean p1) {
+        return p1 ? card1 : card2;
+    }
+
+    /**
+     * Returns the card player 1 or 2 drew as a new {@link Card}, or null if the event has no card.
+     *
+     * @param p1 true for player 1's card
+     * @return card or null
+     */
+    public Card toCard(boolean p1) {
+        int ordinal = getCard(p1);
+        return ordinal == NO_CARD ? null : Card.fromOrdinal(ordinal);
+    }
+
+    /**
+     * Returns 1 if player 1 won, 2 if player 2 won or {@link #NO_WINNER}.
+     *
+     * @return winner of the turn or game
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Returns the name of the player who won, as it was when the event happened, so handlers never need to read the
+     * model.
+     *
+     * @return name of the winner, or null if the event has no winner
+     */
+    public String getWinnerName() {
+        return winnerName;
+    }
+
+    /**
+     * Returns the number of cards player 1 or 2 had left after the event.
+     *
+     * @param p1 true for player 1
+     * @return cards left
+     */
+    public int getCardsLeft(boolean p1) {
+        return p1 ? cardsLeft1 : cardsLeft2;
+    }
+
+    /**
+     * Returns the number of cards in the pool after the event.
+     *
+     * @return pool size
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + card1 + " " + card2 + " " + winner + " " + cardsLeft1 + "/" + cardsLeft2 + " pool=" + poolSize;
+    }
+
+    /**
+     * Mirrors the callbacks of {@link war.IWarView} that happen during play.
+     */
+    public static enum Type {
+        GAME_START,
+        TURN_START,
+        WAR_START,
+        WAR_PREPARATION,
+        WAR_END,
+        TURN_END,
+        GAME_OVER
+    }
+}
@@ -0,0 +1,196 @@
+package war.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a ring buffer of preallocated {@link TurnEvent}s that decouples the model from its listeners.
+ * The model fills the next free slot and publishes its sequence number; every {@link TurnEventHandler} drains the
+ * buffer in batches on its own thread, so a slow listener (Swing repaint, logging) never runs on the model's thread.
+ * <p>
+ * Publishing is single-producer: like {@link war.WarModel} itself, it must only be driven from one thread at a time.
+ * When the buffer is full the producer waits for the slowest handler instead of overwriting unread events.
+ *
+ * @author Komron Valijonov
+ */
+public class TurnEventBus {
+    private static final Logger logger = Logger.getLogger(TurnEventBus.class.getName());
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int SPIN_TRIES = 100;  // busy spins before parking
+    private static final long PARK_NANOS = 100_000;  // 0.1 ms
+
+    private final TurnEvent[] slots;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong(-1);  // last published sequence
+    private final List<Processor> processors = new ArrayList<>();
+    private long nextSequence = 0;  // producer only
+    private long cachedGate = -1;  // producer only, lowest handler sequence seen last time we checked
+    private volatile boolean started = false;
+
+    /**
+     * Creates a bus with the default capacity.
+     */
+    public TurnEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a bus.
+     *
+     * @param capacity number of slots (a power of two)
+     */
+    public TurnEventBus(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        slots = new TurnEvent[capacity];
+        for (int i = 0; i < capacity; i++)
+            slots[i] = new TurnEvent();
+        mask = capacity - 1;
+    }
+
+    /**
+     * Registers a handler. Handlers must be added before the bus is started.
+     *
+     * @param name    of handler, used to name its thread
+     * @param handler to add
+     */
+    public void addHandler(String name, TurnEventHandler handler) {
+        if (started)
+            throw new IllegalStateException("Handlers must be added before the bus is started");
+        processors.add(new Processor(name, handler));
+    }
+
+    /**
+     * Starts a daemon thread for every handler. Handlers only see events published after this call.
+     */
+    public void start() {
+        if (started)
+            return;
+        for (Processor processor : processors) {
+            // handlers only see events published from now on
+            processor.sequence.set(cursor.get());
+            Thread thread = new Thread(processor, "war-events-" + processor.name);
+            thread.setDaemon(true);
+            processor.thread = thread;
+            thread.start();
+        }
+        started = true;
+    }
+
+    /**
+     * Stops all handler threads once they have drained the events published so far.
+     */
+    public void halt() {
+        started = false;
+        for (Processor processor : processors) {
+            processor.running = false;
+            LockSupport.unpark(processor.thread);
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last published event.
+     *
+     * @return last published sequence, -1 if nothing was published yet
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Claims, fills and publishes the next slot. Does not allocate.
+     *
+     * @param type       of event
+     * @param card1      ordinal of player 1's card or {@link TurnEvent#NO_CARD}
+     * @param card2      ordinal of player 2's card or {@link TurnEvent#NO_CARD}
+     * @param winner     1, 2 or {@link TurnEvent#NO_WINNER}
+     * @param winnerName name of the winner, or null if there is none
+     * @param cardsLeft1 cards left in player 1's deck
+     * @param cardsLeft2 cards left in player 2's deck
+     * @param poolSize   cards in the pool
+     */
+    public void publish(TurnEvent.Type type, int card1, int card2, int winner, String winnerName, int cardsLeft1,
+                        int cardsLeft2, int poolSize) {
+        long sequence = next();
+        slots[(int) sequence & mask].set(type, card1, card2, winner, winnerName, cardsLeft1, cardsLeft2, poolSize);
+        cursor.lazySet(sequence);
+    }
+
+    private long next() {
+        long sequence = nextSequence++;
+        long wrapPoint = sequence - slots.length;
+        // only look at the handlers again when we are about to overwrite a slot they may not have read
+        if (wrapPoint > cachedGate) {
+            int tries = 0;
+            while (wrapPoint > (cachedGate = minimumSequence())) {
+                if (++tries < SPIN_TRIES)
+                    Thread.onSpinWait();
+                else
+                    LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+        return sequence;
+    }
+
+    private long minimumSequence() {
+        // handlers that are not running must not hold the producer back forever
+        if (!started)
+            return Long.MAX_VALUE;
+        long min = Long.MAX_VALUE;
+        for (Processor processor : processors)
+            min = Math.min(min, processor.sequence.get());
+        return min;
+    }
+
+    /**
+     * Drains the ring buffer for one handler.
+     */
+    private class Processor implements Runnable {
+        private final String name;
+        private final TurnEventHandler handler;
+        private final AtomicLong sequence = new AtomicLong(-1);  // last sequence handled
+        private volatile boolean running = true;
+        private Thread thread;
+
+        Processor(String name, TurnEventHandler handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            int tries = 0;
+            while (true) {
+                long available = cursor.get();
+                if (available < next) {
+                    if (!running)
+                        return;
+                    // nothing to do, spin for a while before parking
+                    if (++tries < SPIN_TRIES)
+                        Thread.onSpinWait();
+                    else
+                        LockSupport.parkNanos(PARK_NANOS);
+                    continue;
+                }
+                tries = 0;
+
+                // handle everything published so far as one batch
+                for (long s = next; s <= available; s++) {
+                    try {
+                        handler.onEvent(slots[(int) s & mask], s, s == available);
+                    } catch (RuntimeException e) {
+                        // a broken handler must not stall the producer
+                        logger.severe(name + ": " + e);
+                    }
+                }
+                sequence.lazySet(available);
+                next = available + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package war.event;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a consumer of the {@link TurnEventBus}. Every handler runs on its own thread and sees every event in
+ * the order the model published them.
+ *
+ * @author Komron Valijonov
+ */
+public interface TurnEventHandler {
+    /**
+     * Called for each published event.
+     *
+     * @param event      slot holding the event (only valid until this method returns)
+     * @param sequence   sequence number of the event
+     * @param endOfBatch true if this is the last event currently available, a good time to flush
+     */
+    public void onEvent(TurnEvent event, long sequence, boolean endOfBatch);
+}
@@ -0,0 +1,90 @@
+package war.event;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a {@link TurnEventHandler} that counts what happens in the games it sees.
+ * Counters are written by the handler thread only and can be read from any thread.
+ *
+ * @author Komron Valijonov
+ */
+public class TurnMetrics implements TurnEventHandler {
+    private volatile long games, turns, wars, batches;
+    private volatile int warDepth, maxWarDepth;  // consecutive wars in the current turn and the most seen so far
+
+    @Override
+    public void onEvent(TurnEvent event, long sequence, boolean endOfBatch) {
+        switch (event.getType()) {
+            case GAME_START:
+                games++;
+                warDepth = 0;
+                break;
+            case TURN_START:
+                turns++;
+                break;
+            case WAR_START:
+                wars++;
+                if (++warDepth > maxWarDepth)
+                    maxWarDepth = warDepth;
+                break;
+            case TURN_END:
+                warDepth = 0;
+                break;
+            default:
+                break;
+        }
+        if (endOfBatch)
+            batches++;
+    }
+
+    /**
+     * Returns the number of games started.
+     *
+     * @return games started
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the number of turns played (cards drawn face up).
+     *
+     * @return turns played
+     */
+    public long getTurns() {
+        return turns;
+    }
+
+    /**
+     * Returns the number of wars started.
+     *
+     * @return wars started
+     */
+    public long getWars() {
+        return wars;
+    }
+
+    /**
+     * Returns the longest chain of consecutive wars seen so far.
+     *
+     * @return deepest war
+     */
+    public int getMaxWarDepth() {
+        return maxWarDepth;
+    }
+
+    /**
+     * Returns the number of batches handled. Together with {@link #getTurns()} it shows how far behind this
+     * handler's thread typically is.
+     *
+     * @return batches handled
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("games=%d turns=%d wars=%d maxWarDepth=%d batches=%d",
+                games, turns, wars, maxWarDepth, batches);
+    }
+}
@@ -0,0 +1,190 @@
+package war.gui;
+
+import war.Card;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the images of all cards, decoded once and shared by everything that shows cards.
+ * Images are indexed by card ordinal (see {@link Card#ordinal()}), {@link #BACK} being the back of a card.
+ * <p>
+ * On scaled (HiDPI) displays every card is also needed at the display's scale. Those versions are built once per
+ * scale, in the background, as multi-resolution images holding both the original and the pre-scaled image, so Java2D
+ * picks the right one when painting instead of rescaling the original every time. They are kept in a least recently
+ * used cache keyed by card and scale. A scale is only built once at a time, however many images are asked for while
+ * it is being built.
+ *
+ * @author Komron Valijonov
+ */
+public final class CardImageCache {
+    public static final int BACK = Card.STANDARD_DECK_SIZE;  // index of the card back
+    private static final int MAX_SCALED_IMAGES = 4 * (BACK + 1);  // every card at four different scales
+    private static final Logger logger = Logger.getLogger(CardImageCache.class.getName());
+
+    private static final BufferedImage[] images = new BufferedImage[BACK + 1];  // decoded images at scale 1
+    private static final Map<Float, CompletableFuture<Void>> builds = new ConcurrentHashMap<>();  // by scale
+    private static final Map<Long, Image> scaled = new LinkedHashMap<Long, Image>(MAX_SCALED_IMAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Image> eldest) {
+            if (size() <= MAX_SCALED_IMAGES)
+                return false;
+            // the scale is no longer complete, build it again when it is needed
+            builds.remove(Float.intBitsToFloat((int) (long) eldest.getKey()));
+            return true;
+        }
+    };
+    private static final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "war-card-images");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CardImageCache() {
+    }
+
+    /**
+     * Returns the original image of a card, decoding it the first time it is needed.
+     *
+     * @param index card ordinal or {@link #BACK}
+     * @return image of card
+     */
+    public static synchronized BufferedImage get(int index) {
+        BufferedImage image = images[index];
+        if (image == null)
+            images[index] = image = load(index);
+        return image;
+    }
+
+    /**
+     * Returns the image of a card for a display with the given scale. If the image for that scale has not been built
+     * yet and this is the Event Dispatch Thread, it is built in the background and the original image is returned
+     * for now; see {@link #prepare(double)} to build images ahead of time.
+     *
+     * @param index card ordinal or {@link #BACK}
+     * @param scale of the display (1 for no scaling)
+     * @return image of card, multi-resolution if scaled
+     */
+    public static Image get(int index, double scale) {
+        if (scale == 1.0)
+            return get(index);
+        Image image;
+        synchronized (scaled) {
+            image = scaled.get(key(index, scale));
+        }
+        if (image != null)
+            return image;
+        if (SwingUtilities.isEventDispatchThread()) {
+            prepare(scale);
+            return get(index);
+        }
+        return build(index, scale);
+    }
+
+    /**
+     * Builds the images of all cards for a display with the given scale in the background, unless they are built or
+     * being built already.
+     *
+     * @param scale of the display
+     * @return completes when all images are ready
+     */
+    public static CompletableFuture<Void> prepare(double scale) {
+        return builds.computeIfAbsent((float) scale, s -> CompletableFuture.runAsync(() -> {
+            for (int i = 0; i <= BACK; i++)
+                get(i, scale);
+        }, builder));
+    }
+
+    /**
+     * Returns the scale of a graphics configuration, or of the default screen if it is null.
+     *
+     * @param gc graphics configuration of a component, or null
+     * @return scale (1 for no scaling)
+     */
+    public static double scaleOf(GraphicsConfiguration gc) {
+        if (gc == null) {
+            if (GraphicsEnvironment.isHeadless())
+                return 1.0;
+            gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        }
+        AffineTransform transform = gc.getDefaultTransform();
+        return Math.max(transform.getScaleX(), transform.getScaleY());
+    }
+
+    /**
+     * Decodes all original images, so painting never has to.
+     */
+    public static void preload() {
+        for (int i = 0; i <= BACK; i++)
+            get(i);
+    }
+
+    /**
+     * Returns the size of a card image (all images have the size of the card back).
+     *
+     * @return size of a card
+     */
+    public static Dimension getCardSize() {
+        BufferedImage back = get(BACK);
+        return new Dimension(back.getWidth(), back.getHeight());
+    }
+
+    private static long key(int index, double scale) {
+        return (long) index << 32 | Float.floatToIntBits((float) scale) & 0xffffffffL;
+    }
+
+    private static Image build(int index, double scale) {
+        BufferedImage original = get(index);
+        int width = (int) Math.ceil(original.getWidth() * scale);
+        int height = (int) Math.ceil(original.getHeight() * scale);
+        BufferedImage variant = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = variant.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(original, 0, 0, width, height, null);
+        g.dispose();
+
+        Image image = new BaseMultiResolutionImage(original, variant);
+        synchronized (scaled) {
+            scaled.put(key(index, scale), image);
+        }
+        return image;
+    }
+
+    private static BufferedImage load(int index) {
+        String name = index == BACK ? "b1fv" : Card.fromOrdinal(index).toString();
+        File file = new File(JCard.DEFAULT_IMAGE_DIRECTORY, name + ".png");
+        try {
+            BufferedImage image = ImageIO.read(file);
+            if (image != null)
+                return image;
+        } catch (IOException e) {
+            logger.severe(e.getMessage());
+        }
+        // paint a plain card if the image is missing so the table still works
+        logger.severe("Missing card image: " + file);
+        BufferedImage image = new BufferedImage(71, 96, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 71, 96);
+        g.setColor(Color.BLACK);
+        g.drawRect(0, 0, 70, 95);
+        g.drawString(name, 8, 20);
+        g.dispose();
+        return image;
+    }
+}
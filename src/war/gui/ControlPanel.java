@@ -17,7 +17,7 @@ public class ControlPanel extends JPanel implements Serializable {
     private final JButton actionBtn = new JButton(), newGameBtn = new JButton("New Game");
     private final JButton autoPlayBtn = new JButton("Auto-play");
     private final JLabel cardCount1 = new JLabel("26"), cardCount2 = new JLabel("26");
-    private Runnable action;
+    private volatile Runnable action;  // set on the EDT, may be run from the simulator's thread
 
     /**
      * Creates a new control panel.
@@ -28,12 +28,23 @@ public class ControlPanel extends JPanel implements Serializable {
     public ControlPanel(WarModel model, WarGui gui) {
         super(new BorderLayout());
         this.model = model;
-        setAction("Draw", model::nextTurn);
+        setAction("Draw", this::play);
 
         // add stat counter
         JPanel stats = new JPanel(new BorderLayout());
         stats.add(cardCount1, BorderLayout.WEST);
         stats.add(cardCount2, BorderLayout.EAST);
+
+        // add "undo", "redo" and "replay" buttons between the counters
+        JPanel history = new JPanel();
+        JButton undoBtn = new JButton("Undo"), redoBtn = new JButton("Redo"), replayBtn = new JButton("Replay");
+        history.add(undoBtn);
+        history.add(redoBtn);
+        history.add(replayBtn);
+        replayBtn.addActionListener(a -> gui.startReplay());
+        undoBtn.addActionListener(a -> this.model.undo());
+        redoBtn.addActionListener(a -> this.model.redo());
+        stats.add(history, BorderLayout.CENTER);
         add(stats, BorderLayout.NORTH);
 
         // add buttons
@@ -77,6 +88,19 @@ public class ControlPanel extends JPanel implements Serializable {
         add(buttons, BorderLayout.CENTER);
     }
 
+    /**
+     * Takes the next step of the game: mobilizes after a tie, draws otherwise. Follows the model rather than the
+     * button's label, which only changes once the GUI has caught up with the model's events.
+     */
+    public void play() {
+        if (model.isGameOver())
+            return;
+        if (model.isMobilizing())
+            model.prepareForWar();
+        else
+            model.nextTurn();
+    }
+
     /**
      * Returns the "Auto-play" button.
      *
@@ -90,7 +114,7 @@ public class ControlPanel extends JPanel implements Serializable {
      * Resets the buttons to their default state.
      */
     public void reset() {
-        setAction("Draw", model::nextTurn);
+        setAction("Draw", this::play);
         autoPlayBtn.setText("Auto-play");
     }
 
@@ -98,8 +122,18 @@ public class ControlPanel extends JPanel implements Serializable {
      * Synchronizes the card counts from the model with the GUI.
      */
     public void updateStats() {
-        cardCount1.setText("" + model.getPlayer(true).cardsLeft());
-        cardCount2.setText("" + model.getPlayer(false).cardsLeft());
+        showStats(model.getPlayer(true).cardsLeft(), model.getPlayer(false).cardsLeft());
+    }
+
+    /**
+     * Shows the given card counts.
+     *
+     * @param cardsLeft1 cards left for player 1
+     * @param cardsLeft2 cards left for player 2
+     */
+    public void showStats(int cardsLeft1, int cardsLeft2) {
+        cardCount1.setText("" + cardsLeft1);
+        cardCount2.setText("" + cardsLeft2);
     }
 
     /**
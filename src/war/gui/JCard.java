@@ -12,7 +12,8 @@ import javax.swing.*;
  */
 public class JCard extends Card {
     public static final String DEFAULT_IMAGE_DIRECTORY = "cards";
-    public static final ImageIcon DEFAULT_BACK_IMAGE = new ImageIcon(DEFAULT_IMAGE_DIRECTORY + "/b1fv.png");
+    public static final ImageIcon DEFAULT_BACK_IMAGE =
+            new ImageIcon(CardImageCache.get(CardImageCache.BACK, CardImageCache.scaleOf(null)));
 
     private final JLabel label = new JLabel();
     private final ImageIcon frontImage, backImage;
@@ -68,13 +69,14 @@ public class JCard extends Card {
 
     /**
      * Constructs a new card. This constructor assumes the front and back file names from the suit and rank. A card with
-     * a rank 2 and {@link Suit#HEARTS} would translate to h2.png
+     * a rank 2 and {@link Suit#HEARTS} would translate to h2.png. The images come from the {@link CardImageCache},
+     * pre-scaled for the default screen.
      *
      * @param rank of card (between 2 and 14 (inclusive))
      * @param suit of card
      */
     public JCard(int rank, Suit suit) {
-        this(rank, suit, defaultImageName(rank, suit));
+        this(rank, suit, defaultImage(rank, suit));
     }
 
     /**
@@ -87,9 +89,9 @@ public class JCard extends Card {
         setFaceUp(card.isFaceUp());
     }
 
-    private static String defaultImageName(int rank, Suit suit) {
-        // infer the filename from rank and suit
-        return DEFAULT_IMAGE_DIRECTORY + "/" + new Card(rank, suit).toString() + ".png";
+    private static ImageIcon defaultImage(int rank, Suit suit) {
+        // the cache infers the filename from rank and suit
+        return new ImageIcon(CardImageCache.get(new Card(rank, suit).ordinal(), CardImageCache.scaleOf(null)));
     }
 
     /**
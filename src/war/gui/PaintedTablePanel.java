@@ -0,0 +1,250 @@
+package war.gui;
+
+import war.Card;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.VolatileImage;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a playing table that paints the cards itself instead of switching between labels in a
+ * {@link CardLayout}. Cards come from the shared {@link CardImageCache}, pre-scaled for the screen the table is on,
+ * and are drawn into a {@link VolatileImage} back buffer, which is copied to the screen in one go. Cards that are
+ * drawn slide from the player's deck to their slot at up to 60 frames per second.
+ * <p>
+ * The table only keeps a fixed set of sprites (one per slot) and the back buffer, which is only recreated when the
+ * panel is resized, so animating does not create any objects of its own.
+ *
+ * @author Komron Valijonov
+ */
+public class PaintedTablePanel extends JPanel implements TableRenderer, ActionListener {
+    private static final long serialVersionUID = 1L;
+
+    private static final int FRAME_MILLIS = 1000 / 60;
+    private static final long MOVE_NANOS = 250_000_000L;  // time for a card to slide from the deck to its slot
+    private static final int GAP = 10;  // pixels between cards and around the table
+    private static final int NO_CARD = -1;
+    private static final int BATTLE = 1, WAR = 2;  // slot columns, the deck is column 0
+
+    private final Sprite[] sprites = {
+            new Sprite(true, BATTLE), new Sprite(false, BATTLE), new Sprite(true, WAR), new Sprite(false, WAR)
+    };
+    private final Timer timer = new Timer(FRAME_MILLIS, this);
+    private final Dimension cardSize;
+    private final Image[] images = new Image[CardImageCache.BACK + 1];  // card images for the current scale
+    private double imageScale = Double.NaN;  // scale the images are for
+    private volatile boolean imagesStale = true;
+    private boolean deck1 = true, deck2 = true;
+    private VolatileImage buffer;
+
+    /**
+     * Creates a new table.
+     */
+    public PaintedTablePanel() {
+        setBackground(TablePanel.BACKGROUND_COLOR);
+        setOpaque(true);
+        // the back buffer already takes care of flicker
+        setDoubleBuffered(false);
+        CardImageCache.preload();
+        cardSize = CardImageCache.getCardSize();
+
+        // build the images for the new scale in the background when the panel moves to another screen
+        addPropertyChangeListener("graphicsConfiguration", e -> prepareImages());
+        setPreferredSize(new Dimension(6 * cardSize.width + 7 * GAP, cardSize.height + 2 * GAP));
+    }
+
+    @Override
+    public JComponent getComponent() {
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        synchronized (sprites) {
+            for (Sprite sprite : sprites)
+                sprite.card = NO_CARD;
+            deck1 = deck2 = true;
+        }
+        repaint();
+    }
+
+    @Override
+    public void showCards(Card card1, Card card2) {
+        show(sprites[0], card1.ordinal(), true);
+        show(sprites[1], card2.ordinal(), true);
+    }
+
+    @Override
+    public void showWarBacks() {
+        show(sprites[2], CardImageCache.BACK, true);
+        show(sprites[3], CardImageCache.BACK, true);
+    }
+
+    @Override
+    public void showWarCards(Card card1, Card card2) {
+        // the cards are already in place, just turn them over
+        show(sprites[2], card1.ordinal(), false);
+        show(sprites[3], card2.ordinal(), false);
+    }
+
+    @Override
+    public void setDeckVisible(boolean p1, boolean visible) {
+        synchronized (sprites) {
+            if (p1)
+                deck1 = visible;
+            else
+                deck2 = visible;
+        }
+        repaint();
+    }
+
+    @Override
+    public void showPosition(Card card1, Card card2, boolean warCards, boolean deck1, boolean deck2) {
+        // jump straight to the position without sliding any cards
+        synchronized (sprites) {
+            sprites[0].card = card1 == null ? NO_CARD : card1.ordinal();
+            sprites[1].card = card2 == null ? NO_CARD : card2.ordinal();
+            sprites[2].card = sprites[3].card = warCards ? CardImageCache.BACK : NO_CARD;
+            for (Sprite sprite : sprites)
+                sprite.start = 0;
+            this.deck1 = deck1;
+            this.deck2 = deck2;
+        }
+        repaint();
+    }
+
+    private void show(Sprite sprite, int card, boolean slide) {
+        synchronized (sprites) {
+            sprite.card = card;
+            if (slide)
+                sprite.start = System.nanoTime();
+        }
+        if (slide && !timer.isRunning())
+            timer.start();
+        repaint();
+    }
+
+    /**
+     * Called by the animation timer for every frame.
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        repaint();
+        if (!isAnimating(System.nanoTime()))
+            timer.stop();
+    }
+
+    private boolean isAnimating(long now) {
+        synchronized (sprites) {
+            for (Sprite sprite : sprites) {
+                if (sprite.card != NO_CARD && now - sprite.start < MOVE_NANOS)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        prepareImages();
+    }
+
+    private void prepareImages() {
+        CardImageCache.prepare(CardImageCache.scaleOf(getGraphicsConfiguration())).thenRun(() -> {
+            imagesStale = true;
+            repaint();
+        });
+    }
+
+    /**
+     * Picks up the images for the current scale from the cache, only when the scale changed or new images are ready.
+     */
+    private void updateImages(double scale) {
+        if (scale == imageScale && !imagesStale)
+            return;
+        imagesStale = false;
+        imageScale = scale;
+        for (int i = 0; i < images.length; i++)
+            images[i] = CardImageCache.get(i, scale);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        int width = getWidth(), height = getHeight();
+        if (width <= 0 || height <= 0)
+            return;
+        do {
+            // (re)create the back buffer only when the size or screen changed or its contents were lost
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            updateImages(CardImageCache.scaleOf(gc));
+            if (buffer == null || buffer.getWidth() != width || buffer.getHeight() != height
+                    || buffer.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (buffer != null)
+                    buffer.flush();
+                buffer = createVolatileImage(width, height);
+                if (buffer == null) {
+                    // not displayable yet
+                    super.paintComponent(g);
+                    return;
+                }
+            }
+            Graphics2D bg = buffer.createGraphics();
+            try {
+                paintTable(bg, width, height, System.nanoTime());
+            } finally {
+                bg.dispose();
+            }
+            g.drawImage(buffer, 0, 0, null);
+        } while (buffer.contentsLost());
+    }
+
+    private void paintTable(Graphics2D g, int width, int height, long now) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, width, height);
+        int y = (height - cardSize.height) / 2;
+
+        synchronized (sprites) {
+            // decks
+            Image back = images[CardImageCache.BACK];
+            if (deck1)
+                g.drawImage(back, slotX(true, 0, width), y, cardSize.width, cardSize.height, null);
+            if (deck2)
+                g.drawImage(back, slotX(false, 0, width), y, cardSize.width, cardSize.height, null);
+
+            // cards on the table, sliding from the deck to their slot
+            for (Sprite sprite : sprites) {
+                if (sprite.card == NO_CARD)
+                    continue;
+                int from = slotX(sprite.p1, 0, width), to = slotX(sprite.p1, sprite.column, width);
+                double t = Math.min(1.0, (now - sprite.start) / (double) MOVE_NANOS);
+                double eased = 1 - (1 - t) * (1 - t) * (1 - t);
+                int x = from + (int) Math.round((to - from) * eased);
+                g.drawImage(images[sprite.card], x, y, cardSize.width, cardSize.height, null);
+            }
+        }
+    }
+
+    private int slotX(boolean p1, int column, int width) {
+        int offset = GAP + column * (cardSize.width + GAP);
+        return p1 ? offset : width - offset - cardSize.width;
+    }
+
+    /**
+     * A card in one of the slots on the table.
+     */
+    private static final class Sprite {
+        private final boolean p1;
+        private final int column;
+        private int card = NO_CARD;  // card ordinal, CardImageCache.BACK or NO_CARD
+        private long start;  // when the card started sliding (System.nanoTime())
+
+        Sprite(boolean p1, int column) {
+            this.p1 = p1;
+            this.column = column;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package war.gui;
+
+import war.Card;
+import war.HeadlessGame;
+import war.replay.ReplayLog;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the panel that takes the place of the {@link ControlPanel} in replay mode. Moving the slider jumps
+ * straight to the chosen step; the table only ever shows that step.
+ *
+ * @author Komron Valijonov
+ */
+public class ReplayPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    private final ReplayLog log;
+    private final TableRenderer table;
+    private final HeaderPanel header;
+    private final HeadlessGame game = new HeadlessGame();  // reused for every seek
+    private final JSlider slider;
+    private final JLabel cardCount1 = new JLabel(), cardCount2 = new JLabel(), stepLabel = new JLabel();
+
+    /**
+     * Creates a new replay panel.
+     *
+     * @param log to replay
+     * @param gui being used
+     */
+    public ReplayPanel(ReplayLog log, WarGui gui) {
+        super(new BorderLayout());
+        this.log = log;
+        this.table = gui.getTable();
+        this.header = gui.getHeader();
+
+        // add stat counter
+        JPanel stats = new JPanel(new BorderLayout());
+        stats.add(cardCount1, BorderLayout.WEST);
+        stats.add(stepLabel, BorderLayout.CENTER);
+        stepLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        stats.add(cardCount2, BorderLayout.EAST);
+        add(stats, BorderLayout.NORTH);
+
+        // add slider to scrub through the game
+        slider = new JSlider(0, log.getSteps(), log.getSteps());
+        slider.addChangeListener(e -> showStep(slider.getValue()));
+        add(slider, BorderLayout.CENTER);
+
+        // add "back to game" button
+        JButton backBtn = new JButton("Back to Game");
+        backBtn.addActionListener(a -> gui.stopReplay());
+        add(backBtn, BorderLayout.EAST);
+
+        showStep(log.getSteps());
+    }
+
+    /**
+     * Shows the state of the game after the given step.
+     *
+     * @param step to show
+     */
+    public void showStep(int step) {
+        log.seek(step, game);
+
+        // cards drawn face up are on the table unless the players just mobilized
+        int action = log.getAction(step);
+        int card1 = log.getCard(step, true), card2 = log.getCard(step, false);
+        boolean faceUp = action != HeadlessGame.MOBILIZE && card1 != HeadlessGame.NO_CARD;
+        boolean warCards = action == HeadlessGame.MOBILIZE
+                || step > 0 && log.getAction(step - 1) == HeadlessGame.MOBILIZE;
+        table.showPosition(faceUp ? Card.fromOrdinal(card1) : null, faceUp ? Card.fromOrdinal(card2) : null,
+                warCards, game.getCardsLeft(true) > 0, game.getCardsLeft(false) > 0);
+
+        cardCount1.setText("" + game.getCardsLeft(true));
+        cardCount2.setText("" + game.getCardsLeft(false));
+        stepLabel.setText("Step " + step + " of " + log.getSteps());
+        header.setMessage(game.isGameOver() ? "Replay: game over" : game.isWar() ? "Replay: war!" : "Replay");
+    }
+}
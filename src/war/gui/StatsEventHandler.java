@@ -0,0 +1,44 @@
+package war.gui;
+
+import war.event.TurnEvent;
+import war.event.TurnEventHandler;
+
+import javax.swing.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the GUI's consumer of the {@link war.event.TurnEventBus}. Keeps the card counters of the
+ * {@link ControlPanel} up to date, posting at most one update to the Event Dispatch Thread per batch of events.
+ *
+ * @author Komron Valijonov
+ */
+public class StatsEventHandler implements TurnEventHandler {
+    private final ControlPanel controls;
+    private final AtomicBoolean updatePending = new AtomicBoolean(false);
+    private volatile int cardsLeft1, cardsLeft2;
+
+    /**
+     * Creates a new handler.
+     *
+     * @param controls panel showing the card counts
+     */
+    public StatsEventHandler(ControlPanel controls) {
+        this.controls = controls;
+    }
+
+    @Override
+    public void onEvent(TurnEvent event, long sequence, boolean endOfBatch) {
+        cardsLeft1 = event.getCardsLeft(true);
+        cardsLeft2 = event.getCardsLeft(false);
+
+        // skip posting if the previous update has not been painted yet, it will pick up the latest counts
+        if (endOfBatch && updatePending.compareAndSet(false, true))
+            SwingUtilities.invokeLater(this::update);
+    }
+
+    private void update() {
+        updatePending.set(false);
+        controls.showStats(cardsLeft1, cardsLeft2);
+    }
+}
@@ -11,7 +11,7 @@ import java.awt.*;
  *
  * @author Komron Valijonov
  */
-public class TablePanel extends JPanel {
+public class TablePanel extends JPanel implements TableRenderer {
     public static final Color BACKGROUND_COLOR = new Color(128, 208, 153);
     private final PlayerPanel player1, player2;
 
@@ -35,9 +35,12 @@ public class TablePanel extends JPanel {
         return p1 ? player1 : player2;
     }
 
-    /**
-     * Resets the table to a blank state.
-     */
+    @Override
+    public JComponent getComponent() {
+        return this;
+    }
+
+    @Override
     public void reset() {
         player1.getDeck().setVisible(true);
         player1.getBattlePanel().setVisible(false);
@@ -47,14 +50,26 @@ public class TablePanel extends JPanel {
         player2.getWarPanel().setVisible(false);
     }
 
-    /**
-     * Shows the cards in the "battle" slots for player 1 and 2 respectively.
-     *
-     * @param card1 to show for player 1
-     * @param card2 to show for player 2
-     */
+    @Override
     public void showCards(Card card1, Card card2) {
         player1.getBattlePanel().showCard(card1);
         player2.getBattlePanel().showCard(card2);
     }
+
+    @Override
+    public void showWarBacks() {
+        player1.getWarPanel().showBack();
+        player2.getWarPanel().showBack();
+    }
+
+    @Override
+    public void showWarCards(Card card1, Card card2) {
+        player1.getWarPanel().showCard(card1);
+        player2.getWarPanel().showCard(card2);
+    }
+
+    @Override
+    public void setDeckVisible(boolean p1, boolean visible) {
+        getPlayerPanel(p1).getDeck().setVisible(visible);
+    }
 }
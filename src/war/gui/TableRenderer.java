@@ -0,0 +1,74 @@
+package war.gui;
+
+import war.Card;
+
+import javax.swing.*;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the field of play as the rest of the GUI sees it. {@link TablePanel} implements it with Swing
+ * components, {@link PaintedTablePanel} paints the cards itself.
+ *
+ * @author Komron Valijonov
+ */
+public interface TableRenderer {
+    /**
+     * Returns the component to add to the window.
+     *
+     * @return component showing the table
+     */
+    public JComponent getComponent();
+
+    /**
+     * Resets the table to a blank state.
+     */
+    public void reset();
+
+    /**
+     * Shows the cards in the "battle" slots for player 1 and 2 respectively.
+     *
+     * @param card1 to show for player 1
+     * @param card2 to show for player 2
+     */
+    public void showCards(Card card1, Card card2);
+
+    /**
+     * Shows the face down cards in the "war" slots.
+     */
+    public void showWarBacks();
+
+    /**
+     * Reveals the cards in the "war" slots.
+     *
+     * @param card1 to show for player 1
+     * @param card2 to show for player 2
+     */
+    public void showWarCards(Card card1, Card card2);
+
+    /**
+     * Shows or hides a player's deck.
+     *
+     * @param p1      true for player 1
+     * @param visible true if the player has cards left
+     */
+    public void setDeckVisible(boolean p1, boolean visible);
+
+    /**
+     * Shows a position as a whole, without going through the turns that led to it.
+     *
+     * @param card1    to show for player 1, or null for none
+     * @param card2    to show for player 2, or null for none
+     * @param warCards true if the face down war cards are on the table
+     * @param deck1    true if player 1 has cards left
+     * @param deck2    true if player 2 has cards left
+     */
+    public default void showPosition(Card card1, Card card2, boolean warCards, boolean deck1, boolean deck2) {
+        reset();
+        if (card1 != null && card2 != null)
+            showCards(card1, card2);
+        if (warCards)
+            showWarBacks();
+        setDeckVisible(true, deck1);
+        setDeckVisible(false, deck2);
+    }
+}
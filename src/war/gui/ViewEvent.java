@@ -0,0 +1,82 @@
+package war.gui;
+
+import war.Card;
+import war.event.TurnEvent;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a copy of a {@link TurnEvent} waiting to be shown by the {@link WarGui}. Copies are allocated once by the
+ * {@link ViewEventHandler} and overwritten for every event, like the slots of the bus they are copied from.
+ *
+ * @author Komron Valijonov
+ */
+final class ViewEvent {
+    private TurnEvent.Type type;
+    private long sequence;
+    private int card1, card2;  // card ordinals (see Card#ordinal())
+    private int cardsLeft1, cardsLeft2;
+    private String winnerName;
+
+    /**
+     * Copies an event from the bus into this one.
+     *
+     * @param event    slot to copy
+     * @param sequence sequence number of the event on the bus
+     */
+    void copy(TurnEvent event, long sequence) {
+        this.type = event.getType();
+        this.sequence = sequence;
+        this.card1 = event.getCard(true);
+        this.card2 = event.getCard(false);
+        this.cardsLeft1 = event.getCardsLeft(true);
+        this.cardsLeft2 = event.getCardsLeft(false);
+        this.winnerName = event.getWinnerName();
+    }
+
+    /**
+     * Copies another copy into this one.
+     *
+     * @param other copy to copy
+     */
+    void copy(ViewEvent other) {
+        this.type = other.type;
+        this.sequence = other.sequence;
+        this.card1 = other.card1;
+        this.card2 = other.card2;
+        this.cardsLeft1 = other.cardsLeft1;
+        this.cardsLeft2 = other.cardsLeft2;
+        this.winnerName = other.winnerName;
+    }
+
+    TurnEvent.Type getType() {
+        return type;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the card player 1 or 2 drew, or null if the event has no card.
+     *
+     * @param p1 true for player 1's card
+     * @return card or null
+     */
+    Card toCard(boolean p1) {
+        int ordinal = p1 ? card1 : card2;
+        return ordinal == TurnEvent.NO_CARD ? null : Card.fromOrdinal(ordinal);
+    }
+
+    int getCardsLeft(boolean p1) {
+        return p1 ? cardsLeft1 : cardsLeft2;
+    }
+
+    /**
+     * Returns the name of the winner as it was when the event happened.
+     *
+     * @return name, or null if the event has no winner
+     */
+    String getWinnerName() {
+        return winnerName;
+    }
+}
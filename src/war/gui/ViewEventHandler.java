@@ -0,0 +1,108 @@
+package war.gui;
+
+import war.event.TurnEvent;
+import war.event.TurnEventHandler;
+
+import javax.swing.*;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the GUI's consumer of the {@link war.event.TurnEventBus} for the table, header and buttons. Events are
+ * copied on the bus thread into a buffer of preallocated {@link ViewEvent}s and shown on the Event Dispatch Thread in
+ * the order the model published them, posting at most one update at a time, so the model never waits for Swing.
+ * <p>
+ * The buffer is bounded. When the Event Dispatch Thread falls behind (auto-play runs the model as fast as it can)
+ * and the buffer is half full, the turns waiting in it are coalesced as the next turn starts: only the last new game
+ * and the last turn end among them are kept, which leave the GUI as showing them all would have.
+ * <p>
+ * When the GUI redraws from the model as a whole (load, undo, redo) the events published before are out of date;
+ * {@link #skipThrough(long)} drops them.
+ *
+ * @author Komron Valijonov
+ */
+public class ViewEventHandler implements TurnEventHandler {
+    private static final int CAPACITY = 256;  // far more than the events of one turn
+
+    private final WarGui gui;
+    private ViewEvent[] filling = newBuffer();  // written on the bus thread, guarded by this
+    private ViewEvent[] showing = newBuffer();  // read on the Event Dispatch Thread, swapped with filling
+    private int count;  // events in filling, guarded by this
+    private boolean updatePending;  // guarded by this
+    private volatile long skipThrough = -1;  // events up to this sequence are older than what the GUI shows
+
+    /**
+     * Creates a new handler.
+     *
+     * @param gui to show the events on
+     */
+    public ViewEventHandler(WarGui gui) {
+        this.gui = gui;
+    }
+
+    private static ViewEvent[] newBuffer() {
+        ViewEvent[] buffer = new ViewEvent[CAPACITY];
+        for (int i = 0; i < CAPACITY; i++)
+            buffer[i] = new ViewEvent();
+        return buffer;
+    }
+
+    @Override
+    public void onEvent(TurnEvent event, long sequence, boolean endOfBatch) {
+        synchronized (this) {
+            TurnEvent.Type type = event.getType();
+            boolean turnStart = type == TurnEvent.Type.TURN_START || type == TurnEvent.Type.GAME_START;
+            if (count == CAPACITY || (count >= CAPACITY / 2 && turnStart))
+                coalesce();
+            filling[count++].copy(event, sequence);
+            if (!endOfBatch || updatePending)
+                return;
+            updatePending = true;
+        }
+        SwingUtilities.invokeLater(this::update);
+    }
+
+    /**
+     * Replaces the events waiting to be shown by the last new game and the last turn end after it.
+     */
+    private void coalesce() {
+        int gameStart = -1, turnEnd = -1;
+        for (int i = 0; i < count; i++) {
+            if (filling[i].getType() == TurnEvent.Type.GAME_START)
+                gameStart = i;
+            else if (filling[i].getType() == TurnEvent.Type.TURN_END)
+                turnEnd = i;
+        }
+        int kept = 0;
+        if (gameStart >= 0)
+            filling[kept++].copy(filling[gameStart]);
+        if (turnEnd > gameStart)
+            filling[kept++].copy(filling[turnEnd]);
+        count = kept;
+    }
+
+    /**
+     * Drops the events up to a sequence number that have not been shown yet.
+     *
+     * @param sequence of the last event to drop
+     */
+    public void skipThrough(long sequence) {
+        skipThrough = sequence;
+    }
+
+    private void update() {
+        ViewEvent[] events;
+        int n;
+        synchronized (this) {
+            events = filling;
+            n = count;
+            filling = showing;
+            showing = events;
+            count = 0;
+            updatePending = false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (events[i].getSequence() > skipThrough)
+                gui.show(events[i]);
+        }
+    }
+}
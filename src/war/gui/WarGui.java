@@ -1,9 +1,19 @@
 package war.gui;
 
 import war.*;
+import war.event.GameEventPublisher;
+import war.event.TurnEventBus;
+import war.event.TurnMetrics;
+import war.replay.ReplayLog;
+import war.spectator.SpectatorFeed;
+import war.spectator.SpectatorServer;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * <strong>Final Project</strong><br>
@@ -14,14 +24,24 @@ import java.awt.*;
 public class WarGui extends JPanel implements IWarView, Runnable {
     public static final String FRAME_TITLE = "War Card Game";  // window title
     public static final Dimension FRAME_SIZE = new Dimension(600, 300); // width, height in pixels
+    public static final String PAINTED_TABLE_PROPERTY = "war.paintedTable";
+    public static final String SPECTATOR_PORT_PROPERTY = "war.spectatorPort";
     private final StorageModel storage = new StorageModel(this);
     private final WarModel model = new WarModel(this, storage);  // model that controls the game
 
     private final HeaderPanel header = new HeaderPanel(model);  // header panel
-    private final TablePanel table = new TablePanel();  // playing table
+    private final TableRenderer table = createTable();  // playing table
     private final ControlPanel controls = new ControlPanel(model, this);  // control panel (the section with buttons)
+    private final TurnEventBus events = new TurnEventBus();  // asynchronous listeners of the model
+    private final TurnMetrics metrics = new TurnMetrics();
+    private final ViewEventHandler view = new ViewEventHandler(this);  // shows the model's play on the EDT
+    private final GameEventPublisher publisher = new GameEventPublisher();  // for anyone else following the game
+    private WriteAheadLog journal;  // null if the log could not be opened
     private WarSimulator sim;  // simulator for auto-play mode
-    private Card mobilized1, mobilized2;
+    private ReplayPanel replay;  // replaces the control panel in replay mode
+    private Card mobilized1, mobilized2;  // set by the model as soon as the players mobilize, for saving
+    private Card warCard1, warCard2;  // face down cards on the table, revealed after the war (EDT only)
+    private boolean warShown;  // true while the table shows a war (EDT only)
 
     /**
      * Creates and initializes the game.
@@ -34,10 +54,75 @@ public class WarGui extends JPanel implements IWarView, Runnable {
         add(header, BorderLayout.NORTH);
 
         // add playing table in the center
-        add(table, BorderLayout.CENTER);
+        add(table.getComponent(), BorderLayout.CENTER);
 
         // add control panel at the bottom
         add(controls, BorderLayout.SOUTH);
+
+        // the table, header, buttons, card counters and metrics are updated from the event bus instead of the
+        // model's thread
+        events.addHandler("view", view);
+        events.addHandler("stats", new StatsEventHandler(controls));
+        events.addHandler("metrics", metrics);
+        events.addHandler("publisher", publisher);
+        startSpectatorServer();
+        events.start();
+        model.setEventBus(events);
+    }
+
+    /**
+     * Opens the write-ahead log and recovers the game that was going on when the program last stopped, if any.
+     * The model logs its commands from then on.
+     *
+     * @return true if a game was recovered
+     */
+    private boolean recoverGame() {
+        boolean recovered = false;
+        try {
+            journal = WriteAheadLog.open(storage);
+            recovered = journal.recover(model);
+        } catch (IOException e) {
+            System.err.println("Could not recover the last game: " + e.getMessage());
+            if (journal == null)
+                return false;
+        }
+        model.setJournal(journal);
+        // write what is still pending when the window is closed
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the write-ahead log: " + e.getMessage());
+            }
+        }, "war-wal-close"));
+        return recovered;
+    }
+
+    /**
+     * Streams the game to spectators at /games/live/events if the system property {@value #SPECTATOR_PORT_PROPERTY}
+     * is set to a port.
+     */
+    private void startSpectatorServer() {
+        Integer port = Integer.getInteger(SPECTATOR_PORT_PROPERTY);
+        if (port == null)
+            return;
+        try {
+            SpectatorFeed feed = new SpectatorFeed(256);
+            events.addHandler("spectators", feed);
+            new SpectatorServer(port).addGame("live", feed);
+        } catch (IOException e) {
+            System.err.println("Could not start spectator server: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the playing table. Setting the system property {@value #PAINTED_TABLE_PROPERTY} to true selects the
+     * custom painted table instead of the one made of Swing components.
+     *
+     * @return table to use
+     */
+    private static TableRenderer createTable() {
+        return Boolean.getBoolean(PAINTED_TABLE_PROPERTY) ? new PaintedTablePanel() : new TablePanel();
     }
 
     /**
@@ -72,6 +157,67 @@ public class WarGui extends JPanel implements IWarView, Runnable {
         controls.getAutoPlayButton().setText("Auto-play");
     }
 
+    /**
+     * Switches to replay mode for the current game. The turn log and checkpoint index at
+     * {@value ReplayLog#DEFAULT_PATH} are used if they hold the game up to its current step; otherwise the game is
+     * replayed headless up to its current step and written there for next time. Scrubbing never touches the model.
+     */
+    public void startReplay() {
+        if (replay != null)
+            return;
+        if (sim != null)
+            stopSimulator();
+        ReplayLog log = loadReplay();
+
+        // show the replay controls instead of the game controls
+        remove(controls);
+        add(replay = new ReplayPanel(log, this), BorderLayout.SOUTH);
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Reads the replay of the current game from disk, or records it and writes it to disk.
+     *
+     * @return replay up to the current step
+     */
+    private ReplayLog loadReplay() {
+        Path path = Paths.get(ReplayLog.DEFAULT_PATH);
+        HeadlessGame start = model.toHeadless(true);
+        int steps = model.getStep();
+        if (Files.exists(path)) {
+            try {
+                ReplayLog log = ReplayLog.load(path);
+                if (log.getSteps() == steps && log.startsFrom(start))
+                    return log;
+            } catch (IOException e) {
+                System.err.println("Could not read the replay: " + e.getMessage());
+            }
+        }
+        ReplayLog log = ReplayLog.record(start, ReplayLog.DEFAULT_INTERVAL, steps);
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            log.save(path);
+        } catch (IOException e) {
+            System.err.println("Could not write the replay: " + e.getMessage());
+        }
+        return log;
+    }
+
+    /**
+     * Leaves replay mode and shows the current state of the game again.
+     */
+    public void stopReplay() {
+        if (replay == null)
+            return;
+        remove(replay);
+        replay = null;
+        add(controls, BorderLayout.SOUTH);
+        revalidate();
+        repaint();
+        onGameRestore();
+    }
+
     /**
      * Returns currently running simulator.
      *
@@ -95,10 +241,28 @@ public class WarGui extends JPanel implements IWarView, Runnable {
      *
      * @return table panel
      */
-    public TablePanel getTable() {
+    public TableRenderer getTable() {
         return table;
     }
 
+    /**
+     * Returns the metrics collected from the model's events.
+     *
+     * @return metrics
+     */
+    public TurnMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the publisher of the model's events, for subscribers that follow the game without being a view.
+     *
+     * @return publisher
+     */
+    public GameEventPublisher getEventPublisher() {
+        return publisher;
+    }
+
     /**
      * Returns control panel.
      *
@@ -126,8 +290,51 @@ public class WarGui extends JPanel implements IWarView, Runnable {
         frame.setSize(FRAME_SIZE);
         frame.setVisible(true);
 
-        // automatically start a new game
-        model.newGame();
+        // pick up where the last game left off, or automatically start a new game
+        if (recoverGame()) {
+            System.out.println("Game recovered.");
+            onGameRestore();
+            header.updateNameTags();
+        } else {
+            model.newGame();
+        }
+    }
+
+    /**
+     * Shows an event of the model. Called on the Event Dispatch Thread, in the order the model published the events,
+     * which may be some time after the model moved on; the event itself tells what happened, so the model is not read.
+     *
+     * @param event to show
+     */
+    void show(ViewEvent event) {
+        switch (event.getType()) {
+            case GAME_START:
+                onGameStart();
+                break;
+            case TURN_START:
+                onTurnStart(event.toCard(true), event.toCard(false));
+                // remove deck image if player is on last card
+                table.setDeckVisible(true, event.getCardsLeft(true) > 0);
+                table.setDeckVisible(false, event.getCardsLeft(false) > 0);
+                break;
+            case WAR_START:
+                onWarStart();
+                break;
+            case WAR_PREPARATION:
+                onWarPreparation(event.toCard(true), event.toCard(false));
+                break;
+            case WAR_END:
+                onWarEnd();
+                break;
+            case TURN_END:
+                showTurnEnd(event.getWinnerName());
+                break;
+            case GAME_OVER:
+                showGameOver(event.getWinnerName());
+                break;
+            default:
+                break;
+        }
     }
 
     @Override
@@ -139,6 +346,7 @@ public class WarGui extends JPanel implements IWarView, Runnable {
         // clear board
         table.reset();
         controls.reset();
+        warShown = false;
 
         // set welcome message
         header.setMessage(HeaderPanel.MESSAGE_WELCOME);
@@ -159,13 +367,18 @@ public class WarGui extends JPanel implements IWarView, Runnable {
     @Override
     public void onGameLoad() {
         System.out.println("Game loaded.");
+        // what the model published before is older than the loaded game
+        view.skipThrough(events.getCursor());
+        warShown = model.isWar();
         // enable draw button and update stats
         controls.getActionButton().setEnabled(true);
         controls.updateStats();
 
-        // update the table and header
-        table.showCards(model.getCurrentlyDrawnCard(true), model.getCurrentlyDrawnCard(false));
-
+        // update the table and header (a game saved before the first draw has no cards on the table)
+        table.reset();
+        Card card1 = model.getCurrentlyDrawnCard(true), card2 = model.getCurrentlyDrawnCard(false);
+        if (card1 != null && card2 != null)
+            table.showCards(card1, card2);
     }
 
     @Override
@@ -173,70 +386,92 @@ public class WarGui extends JPanel implements IWarView, Runnable {
         System.err.println("Error loading game.");
     }
 
+    @Override
+    public void onGameRestore() {
+        // what the model published before is older than the restored state
+        view.skipThrough(events.getCursor());
+        warShown = model.isWar();
+
+        // redraw the table for the restored state
+        table.reset();
+        Card card1 = model.getCurrentlyDrawnCard(true), card2 = model.getCurrentlyDrawnCard(false);
+        if (card1 != null && card2 != null)
+            table.showCards(card1, card2);
+
+        // pick up the game where the restored state left it
+        controls.getActionButton().setEnabled(!model.isGameOver());
+        controls.setAction(model.isMobilizing() ? "Mobilize" : "Draw", controls::play);
+        controls.updateStats();
+        header.setMessage(model.isWar() ? FRAME_TITLE : HeaderPanel.MESSAGE_WELCOME);
+    }
+
     @Override
     public void onTurnStart(Card card1, Card card2) {
         // clear "war panel" if displayed
-        if (!model.isWar())
+        if (!warShown)
             table.reset();
 
         // show drawn cards
         table.showCards(card1, card2);
 
-        // remove deck image if player is on last card
-        table.getPlayerPanel(true).getDeck().setVisible(model.getPlayer(true).hasCard());
-        table.getPlayerPanel(false).getDeck().setVisible(model.getPlayer(false).hasCard());
+        // a war not revealed yet when the next turn started is not revealed at all
+        controls.setAction("Draw", controls::play);
     }
 
     @Override
     public void onWarStart() {
+        warShown = true;
         // set title
         header.setMessage(FRAME_TITLE);
         // set action to "mobilize"
-        controls.setAction("Mobilize", model::prepareForWar);
-        // update stats
-        controls.updateStats();
+        controls.setAction("Mobilize", controls::play);
     }
 
     @Override
     public void onWarPreparation(Card card1, Card card2) {
         // save cards for later
-        mobilized1 = card1;
-        mobilized2 = card2;
+        warCard1 = card1;
+        warCard2 = card2;
 
         // reset table
         table.reset();
 
         // show card back in "war" pane
-        table.getPlayerPanel(true).getWarPanel().showBack();
-        table.getPlayerPanel(false).getWarPanel().showBack();
+        table.showWarBacks();
 
         // disable mobilize button and enable draw button
-        controls.setAction("Draw", model::nextTurn);
-        controls.updateStats();
+        controls.setAction("Draw", controls::play);
     }
 
     @Override
     public void onWarEnd() {
         // reveal hidden cards next time action button is clicked
+        Card card1 = warCard1, card2 = warCard2;
         controls.setAction("Reveal", () -> {
-            table.getPlayerPanel(true).getWarPanel().showCard(mobilized1);
-            table.getPlayerPanel(false).getWarPanel().showCard(mobilized2);
-            controls.setAction("Draw", model::nextTurn);
+            table.showWarCards(card1, card2);
+            controls.setAction("Draw", controls::play);
         });
     }
 
     @Override
     public void onTurnEnd(Card card1, Card card2, Player winner) {
+        showTurnEnd(winner.getName());
+    }
+
+    private void showTurnEnd(String winner) {
+        warShown = false;
         // set winner message
-        header.setMessage(HeaderPanel.MESSAGE_TURN_OVER, winner.getName());
-        controls.updateStats();
+        header.setMessage(HeaderPanel.MESSAGE_TURN_OVER, winner);
     }
 
     @Override
     public void onGameOver(Player winner) {
-        header.setMessage(HeaderPanel.MESSAGE_GAME_OVER, winner.getName());
+        showGameOver(winner.getName());
+    }
+
+    private void showGameOver(String winner) {
+        header.setMessage(HeaderPanel.MESSAGE_GAME_OVER, winner);
         controls.getActionButton().setEnabled(false);
-        controls.updateStats();
     }
 
     @Override
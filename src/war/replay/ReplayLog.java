@@ -0,0 +1,209 @@
+package war.replay;
+
+import war.HeadlessGame;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the turn log of one game together with an index of full-state checkpoints, which makes it possible to
+ * jump to any step of a long game instantly: restore the nearest checkpoint before the step and play the remaining
+ * (at most {@link #getInterval()}) steps headless.
+ * <p>
+ * The turn log has one record per step (what happened, the cards drawn and the winner). The index has one
+ * {@link HeadlessGame#STATE_SIZE} byte state every {@link #getInterval()} steps, starting with the state before the
+ * first step. On disk the index is stored next to the log, in a file with the same name and an ".index" suffix.
+ * The GUI keeps the replay of the current game at {@value #DEFAULT_PATH}, next to the save file.
+ *
+ * @author Komron Valijonov
+ */
+public class ReplayLog {
+    public static final int DEFAULT_INTERVAL = 64;  // steps between checkpoints
+    public static final String DEFAULT_PATH = "./war-saves/game.replay";
+    public static final String INDEX_SUFFIX = ".index";
+    private static final int LOG_MAGIC = 0x5741524a;  // "WARJ"
+    private static final int INDEX_MAGIC = 0x57415258;  // "WARX"
+    private static final int RECORD_SIZE = 4;  // action, card 1, card 2, winner
+    private static final int LOG_HEADER = 8;  // magic, steps
+    private static final int INDEX_HEADER = 12;  // magic, interval, checkpoints
+
+    private final int interval, steps;
+    private final byte[] records;  // turn log
+    private final byte[] checkpoints;  // index
+
+    private ReplayLog(int interval, int steps, byte[] records, byte[] checkpoints) {
+        this.interval = interval;
+        this.steps = steps;
+        this.records = records;
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Plays a game headless and records its turn log and checkpoints.
+     *
+     * @param game     to record, at the state the replay starts from (it is played to the end)
+     * @param interval steps between checkpoints
+     * @param maxSteps most steps to record
+     * @return replay of the game
+     */
+    public static ReplayLog record(HeadlessGame game, int interval, int maxSteps) {
+        if (interval < 1)
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        ByteArrayOutputStream checkpoints = new ByteArrayOutputStream();
+        byte[] state = new byte[HeadlessGame.STATE_SIZE];
+
+        int steps = 0;
+        while (steps < maxSteps && !game.isGameOver()) {
+            // checkpoint the state before every interval-th step
+            if (steps % interval == 0) {
+                game.writeState(state, 0);
+                checkpoints.write(state, 0, state.length);
+            }
+            int action = game.step();
+            records.write(action);
+            records.write(game.getDrawnCard(true));
+            records.write(game.getDrawnCard(false));
+            records.write(game.getWinner());
+            steps++;
+        }
+        // make sure the final state has a checkpoint to seek from
+        if (steps % interval == 0) {
+            game.writeState(state, 0);
+            checkpoints.write(state, 0, state.length);
+        }
+        return new ReplayLog(interval, steps, records.toByteArray(), checkpoints.toByteArray());
+    }
+
+    /**
+     * Returns true if the replay starts from the state a game is in, so it is a replay of that game.
+     *
+     * @param game at the state to compare with
+     * @return true if the first checkpoint is the game's state
+     */
+    public boolean startsFrom(HeadlessGame game) {
+        byte[] state = new byte[HeadlessGame.STATE_SIZE];
+        game.writeState(state, 0);
+        return Arrays.equals(state, 0, state.length, checkpoints, 0, state.length);
+    }
+
+    /**
+     * Returns the number of steps in the log.
+     *
+     * @return steps recorded
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns the number of steps between checkpoints.
+     *
+     * @return checkpoint interval
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Sets a game to the state after the given step, by restoring the closest checkpoint and playing
+     * at most {@link #getInterval()} - 1 steps.
+     *
+     * @param step to seek to (0 is the start of the replay)
+     * @param game to set the state of
+     * @return the game
+     */
+    public HeadlessGame seek(int step, HeadlessGame game) {
+        if (step < 0 || step > steps)
+            throw new IndexOutOfBoundsException("Step " + step + " out of bounds for replay of " + steps + " steps");
+        int checkpoint = step / interval;
+        game.readState(checkpoints, checkpoint * HeadlessGame.STATE_SIZE);
+        for (int s = checkpoint * interval; s < step; s++)
+            game.step();
+        return game;
+    }
+
+    /**
+     * Returns what happened in the given step.
+     *
+     * @param step to look up (1 is the first step)
+     * @return action ({@link HeadlessGame#TURN}, ...), {@link HeadlessGame#NONE} for step 0
+     */
+    public int getAction(int step) {
+        return step == 0 ? HeadlessGame.NONE : records[(step - 1) * RECORD_SIZE];
+    }
+
+    /**
+     * Returns the card player 1 or 2 had drawn face up after the given step.
+     *
+     * @param step to look up (1 is the first step)
+     * @param p1   true for player 1
+     * @return card ordinal or {@link HeadlessGame#NO_CARD}
+     */
+    public int getCard(int step, boolean p1) {
+        if (step == 0)
+            return checkpoints[HeadlessGame.STATE_SIZE - (p1 ? 2 : 1)];
+        return records[(step - 1) * RECORD_SIZE + (p1 ? 1 : 2)];
+    }
+
+    /**
+     * Writes the turn log to the given file and the index next to it.
+     *
+     * @param log file to write the turn log to
+     * @throws IOException if writing fails
+     */
+    public void save(Path log) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(log)))) {
+            out.writeInt(LOG_MAGIC);
+            out.writeInt(steps);
+            out.write(records);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexOf(log))))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(interval);
+            out.writeInt(checkpoints.length / HeadlessGame.STATE_SIZE);
+            out.write(checkpoints);
+        }
+    }
+
+    /**
+     * Reads a turn log and the index next to it.
+     *
+     * @param log file the turn log was saved to
+     * @return replay
+     * @throws IOException if reading fails or the files are not a replay
+     */
+    public static ReplayLog load(Path log) throws IOException {
+        byte[] records;
+        int steps;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log)))) {
+            if (in.readInt() != LOG_MAGIC)
+                throw new IOException("Not a turn log: " + log);
+            steps = in.readInt();
+            // a corrupt length must not reach the arrays the replay is read from
+            if (steps < 0 || (long) steps * RECORD_SIZE != Files.size(log) - LOG_HEADER)
+                throw new IOException("Turn log does not hold " + steps + " steps: " + log);
+            records = new byte[steps * RECORD_SIZE];
+            in.readFully(records);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexOf(log))))) {
+            if (in.readInt() != INDEX_MAGIC)
+                throw new IOException("Not a checkpoint index: " + indexOf(log));
+            int interval = in.readInt();
+            int count = in.readInt();
+            if (interval < 1 || count != steps / interval + 1
+                    || (long) count * HeadlessGame.STATE_SIZE != Files.size(indexOf(log)) - INDEX_HEADER)
+                throw new IOException("Checkpoint index does not match turn log: " + indexOf(log));
+            byte[] checkpoints = new byte[count * HeadlessGame.STATE_SIZE];
+            in.readFully(checkpoints);
+            return new ReplayLog(interval, steps, records, checkpoints);
+        }
+    }
+
+    private static Path indexOf(Path log) {
+        return log.resolveSibling(log.getFileName() + INDEX_SUFFIX);
+    }
+}
@@ -0,0 +1,78 @@
+package war.sim;
+
+import war.Card;
+import war.HeadlessGame;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Checks that playing headless ({@link HeadlessGame}) does not allocate anything once it is warmed up.
+ * Plays millions of turns (dealing, shuffling and playing games to the end) on one thread and compares the bytes the
+ * thread allocated, as counted by {@link com.sun.management.ThreadMXBean}, with a budget of 0 bytes per turn.
+ * <p>
+ * Exits with status 0 if the budget holds, 1 if it is exceeded and 2 if the JVM cannot count allocations,
+ * so it can be run as a check after every build.
+ * Usage: AllocationBudget [turns] [bytesPerTurn]
+ *
+ * @author Komron Valijonov
+ */
+public final class AllocationBudget {
+    private static final long WARMUP_TURNS = 20_000_000;
+    private static final long MAX_STEPS = 50_000;
+
+    private AllocationBudget() {
+    }
+
+    public static void main(String[] args) {
+        long turns = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        double budget = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            System.err.println("Allocation counting is not supported by this JVM");
+            System.exit(2);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("Allocation counting is not supported by this JVM");
+            System.exit(2);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        HeadlessGame game = new HeadlessGame();
+        byte[] deck = new byte[Card.STANDARD_DECK_SIZE];
+        SplittableRandom random = new SplittableRandom(0);
+        Deals.reset(deck);
+
+        // let the JIT compile the turn loop first, the interpreter allocates on its own
+        play(game, deck, random, WARMUP_TURNS);
+
+        // the counter itself may allocate a little, measure that first and leave it out
+        long baseline = threads.getCurrentThreadAllocatedBytes();
+        baseline = threads.getCurrentThreadAllocatedBytes() - baseline;
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        long played = play(game, deck, random, turns);
+        long allocated = Math.max(0, threads.getCurrentThreadAllocatedBytes() - before - baseline);
+
+        double perTurn = (double) allocated / played;
+        System.out.printf("%d turns, %d bytes allocated (%.6f bytes/turn, budget %.6f)%n",
+                played, allocated, perTurn, budget);
+        if (perTurn > budget) {
+            System.err.println("Allocation budget exceeded");
+            System.exit(1);
+        }
+    }
+
+    private static long play(HeadlessGame game, byte[] deck, SplittableRandom random, long turns) {
+        long played = 0;
+        while (played < turns) {
+            Deals.shuffle(deck, random);
+            game.deal(deck, 0);
+            game.playOut(MAX_STEPS);
+            played += game.getTurns();
+        }
+        return played;
+    }
+}
@@ -0,0 +1,216 @@
+package war.sim;
+
+import war.Card;
+import war.HeadlessGame;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a long simulation of many games on several threads, which can be stopped at any time and resumed.
+ * Games are played in chunks of consecutive game indexes (see {@link Deals}). Every so often the runner writes the
+ * chunks that are done and the {@link GameHistogram} of their games to a checkpoint file; a runner started with the
+ * same settings and checkpoint file skips those chunks. The histogram only holds whole numbers, so the result of a
+ * resumed run is exactly the same as that of a run that was never stopped.
+ *
+ * @author Komron Valijonov
+ */
+public class BatchRunner {
+    public static final int BUCKET_WIDTH = 100, BUCKETS = 500;  // histogram of game lengths up to 50000 turns
+    private static final int MAGIC = 0x5741524b;  // "WARK"
+    private static final int VERSION = 1;
+
+    private final long seed, games, maxSteps;
+    private final int chunk, threads;
+    private final int chunks;
+    private Path checkpoint;
+    private long checkpointMillis;
+
+    // progress, guarded by this
+    private final BitSet done;
+    private GameHistogram histogram = new GameHistogram(BUCKET_WIDTH, BUCKETS);
+    private int next;  // lowest chunk that may not have been handed out
+    private long lastCheckpoint;
+
+    /**
+     * Creates a new runner.
+     *
+     * @param seed     of the simulation
+     * @param games    number of games to play
+     * @param maxSteps most steps per game
+     * @param chunk    games per chunk
+     * @param threads  number of threads to play games on
+     */
+    public BatchRunner(long seed, long games, long maxSteps, int chunk, int threads) {
+        if (games < 0 || chunk < 1 || threads < 1 || (games + chunk - 1) / chunk > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid number of games, chunk size or threads");
+        this.seed = seed;
+        this.games = games;
+        this.maxSteps = maxSteps;
+        this.chunk = chunk;
+        this.threads = threads;
+        this.chunks = (int) ((games + chunk - 1) / chunk);
+        this.done = new BitSet(chunks);
+    }
+
+    /**
+     * Sets the checkpoint file. If it exists, {@link #run()} resumes from it.
+     *
+     * @param file     checkpoint file
+     * @param interval milliseconds between checkpoints (0 to write one after every chunk)
+     */
+    public void setCheckpoint(Path file, long interval) {
+        this.checkpoint = file;
+        this.checkpointMillis = interval;
+    }
+
+    /**
+     * Plays all games not played yet, resuming from the checkpoint file if there is one.
+     *
+     * @return histogram of all games
+     * @throws IOException          if the checkpoint cannot be read or written, or belongs to another simulation
+     * @throws InterruptedException if interrupted
+     */
+    public GameHistogram run() throws IOException, InterruptedException {
+        if (checkpoint != null && Files.exists(checkpoint))
+            resume();
+        lastCheckpoint = System.currentTimeMillis();
+
+        // every thread takes the next chunk not done yet until there are none left
+        ParallelRunner.runOnEachThread("war-batch", threads, thread -> work());
+        synchronized (this) {
+            if (checkpoint != null)
+                writeCheckpoint();
+            return histogram;
+        }
+    }
+
+    /**
+     * Returns the number of games played so far, including those of the checkpoint resumed from.
+     *
+     * @return games played
+     */
+    public synchronized long getGamesDone() {
+        return histogram.getGames();
+    }
+
+    private Void work() throws IOException {
+        HeadlessGame game = new HeadlessGame();
+        byte[] deck = new byte[Card.STANDARD_DECK_SIZE];
+        int c;
+        while (!Thread.currentThread().isInterrupted() && (c = nextChunk()) >= 0) {
+            GameHistogram part = GameHistogram.like(histogram);
+            long to = Math.min(games, (long) (c + 1) * chunk);
+            for (long g = (long) c * chunk; g < to; g++) {
+                Deals.deal(seed, g, deck);
+                game.deal(deck, 0);
+                game.playOut(maxSteps);
+                part.add(game);
+            }
+            complete(c, part);
+        }
+        return null;
+    }
+
+    private synchronized int nextChunk() {
+        next = done.nextClearBit(next);
+        return next < chunks ? next++ : -1;
+    }
+
+    private synchronized void complete(int c, GameHistogram part) throws IOException {
+        histogram.merge(part);
+        done.set(c);
+        long now = System.currentTimeMillis();
+        if (checkpoint != null && now - lastCheckpoint >= checkpointMillis) {
+            writeCheckpoint();
+            lastCheckpoint = now;
+        }
+    }
+
+    /**
+     * Writes the settings, the chunks done and their histogram, followed by a checksum. The file is written next to
+     * the checkpoint and moved over it, so a crash while writing leaves the last checkpoint as it was.
+     */
+    private void writeCheckpoint() throws IOException {
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeLong(games);
+            out.writeLong(maxSteps);
+            out.writeInt(chunk);
+            byte[] bits = done.toByteArray();
+            out.writeInt(bits.length);
+            out.write(bits);
+            histogram.write(out);
+            out.flush();
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private synchronized void resume() throws IOException {
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(checkpoint)), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not a checkpoint: " + checkpoint);
+            if (in.readLong() != seed || in.readLong() != games || in.readLong() != maxSteps || in.readInt() != chunk)
+                throw new IOException("Checkpoint is for a different simulation: " + checkpoint);
+            int length = in.readInt();
+            if (length < 0 || length > (chunks + 7) / 8)
+                throw new IOException("Corrupt checkpoint: " + checkpoint);
+            byte[] bits = new byte[length];
+            in.readFully(bits);
+            GameHistogram saved = GameHistogram.read(in);
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected)
+                throw new IOException("Checkpoint checksum does not match: " + checkpoint);
+
+            BitSet savedDone = BitSet.valueOf(bits);
+            long savedGames = 0;
+            for (int c = savedDone.nextSetBit(0); c >= 0; c = savedDone.nextSetBit(c + 1))
+                savedGames += Math.min(games, (long) (c + 1) * chunk) - (long) c * chunk;
+            if (savedGames != saved.getGames())
+                throw new IOException("Corrupt checkpoint: " + checkpoint);
+            done.clear();
+            done.or(savedDone);
+            histogram = saved;
+            next = 0;
+        }
+    }
+
+    /**
+     * Runs a simulation, resuming from the checkpoint file if it exists, and prints the results.
+     * Usage: BatchRunner seed games checkpoint [threads] [maxSteps]
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: BatchRunner seed games checkpoint [threads] [maxSteps]");
+            System.exit(2);
+        }
+        long seed = Long.parseLong(args[0]);
+        long games = Long.parseLong(args[1]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long maxSteps = args.length > 4 ? Long.parseLong(args[4]) : 50_000;
+
+        BatchRunner runner = new BatchRunner(seed, games, maxSteps, 1_000, threads);
+        runner.setCheckpoint(Paths.get(args[2]), 10_000);
+        System.out.println(runner.run());
+    }
+}
@@ -0,0 +1,224 @@
+package war.sim;
+
+import war.Card;
+import war.HeadlessGame;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents how much each starting card, and each number of aces in a starting hand, is worth: for every card
+ * ordinal, how many finished games the hand holding it won and lost, and for 0 to 4 aces, how many hands held that
+ * many and how many of them won. Hands are dealt as {@link war.WarModel#newGame()} deals them (the first half of the
+ * deck to player 1) and both hands of every game are counted.
+ * <p>
+ * Counts are plain arrays filled by one thread each and merged at the end, so threads never share a counter, and
+ * the result of a seed is the same however many threads play.
+ *
+ * @author Komron Valijonov
+ */
+public final class CardStrength {
+    private static final int CHUNK = 100_000;
+    private static final int HAND = Card.STANDARD_DECK_SIZE / 2;
+    private static final int FIRST_ACE = Card.STANDARD_DECK_SIZE - 4;  // aces have the highest ordinals
+
+    private final long[] wins = new long[Card.STANDARD_DECK_SIZE], losses = new long[Card.STANDARD_DECK_SIZE];
+    private final long[] aceHands = new long[5], aceWins = new long[5];
+    private long games, unfinished;
+
+    /**
+     * Adds a game.
+     *
+     * @param deal   the deal the game started from, player 1's hand first
+     * @param offset of the deal
+     * @param winner 1 or 2, or 0 if the game did not end
+     */
+    public void add(byte[] deal, int offset, int winner) {
+        games++;
+        if (winner == 0) {
+            unfinished++;
+            return;
+        }
+        long[] hand1 = winner == 1 ? wins : losses, hand2 = winner == 1 ? losses : wins;
+        int aces1 = 0;
+        for (int i = offset; i < offset + HAND; i++) {
+            hand1[deal[i]]++;
+            if (deal[i] >= FIRST_ACE)
+                aces1++;
+        }
+        for (int i = offset + HAND; i < offset + Card.STANDARD_DECK_SIZE; i++)
+            hand2[deal[i]]++;
+        aceHands[aces1]++;
+        aceHands[4 - aces1]++;
+        aceWins[winner == 1 ? aces1 : 4 - aces1]++;
+    }
+
+    /**
+     * Adds the counts of another table to this one.
+     *
+     * @param other table to add
+     */
+    public void merge(CardStrength other) {
+        for (int c = 0; c < wins.length; c++) {
+            wins[c] += other.wins[c];
+            losses[c] += other.losses[c];
+        }
+        for (int a = 0; a < aceHands.length; a++) {
+            aceHands[a] += other.aceHands[a];
+            aceWins[a] += other.aceWins[a];
+        }
+        games += other.games;
+        unfinished += other.unfinished;
+    }
+
+    /**
+     * Plays games on a {@link ParallelRunner} and counts them. Game g is dealt by {@link Deals#deal(long, long, byte[])}.
+     *
+     * @param seed         for the deals
+     * @param games        number of games
+     * @param threads      number of threads to play on
+     * @param maxSteps     steps after which a game counts as not ending
+     * @param randomPickup true to pick up the pool in random order (see {@link HeadlessGame#setRandomPickup})
+     * @return counts of all games
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public static CardStrength simulate(long seed, long games, int threads, long maxSteps, boolean randomPickup)
+            throws InterruptedException {
+        CardStrength total = new CardStrength();
+        ParallelRunner.runChunks("war-strength", threads, games, CHUNK,
+                (from, to) -> play(seed, from, to, maxSteps, randomPickup), total::merge);
+        return total;
+    }
+
+    private static CardStrength play(long seed, long from, long to, long maxSteps, boolean randomPickup) {
+        CardStrength chunk = new CardStrength();
+        HeadlessGame game = new HeadlessGame();
+        byte[] deck = new byte[Card.STANDARD_DECK_SIZE];
+        for (long g = from; g < to; g++) {
+            SplittableRandom random = Deals.random(seed, g);
+            Deals.reset(deck);
+            Deals.shuffle(deck, random);
+            game.deal(deck, 0);
+            game.setRandomPickup(randomPickup ? random : null);
+            chunk.add(deck, 0, game.playOut(maxSteps));
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns the number of finished games won by the hand that started with a card.
+     *
+     * @param ordinal of the card (see {@link Card#ordinal()})
+     * @return wins
+     */
+    public long getWins(int ordinal) {
+        return wins[ordinal];
+    }
+
+    /**
+     * Returns the number of finished games lost by the hand that started with a card.
+     *
+     * @param ordinal of the card (see {@link Card#ordinal()})
+     * @return losses
+     */
+    public long getLosses(int ordinal) {
+        return losses[ordinal];
+    }
+
+    /**
+     * Returns how much more often than not the hand holding a card wins: its win rate minus one half.
+     *
+     * @param ordinal of the card (see {@link Card#ordinal()})
+     * @return win contribution from -0.5 to 0.5, 0 before any game finished
+     */
+    public double getContribution(int ordinal) {
+        long held = wins[ordinal] + losses[ordinal];
+        return held == 0 ? 0 : (double) wins[ordinal] / held - 0.5;
+    }
+
+    /**
+     * Returns the number of starting hands of finished games that held a number of aces.
+     *
+     * @param aces from 0 to 4
+     * @return hands
+     */
+    public long getAceHands(int aces) {
+        return aceHands[aces];
+    }
+
+    /**
+     * Returns the number of starting hands holding a number of aces that won.
+     *
+     * @param aces from 0 to 4
+     * @return winning hands
+     */
+    public long getAceWins(int aces) {
+        return aceWins[aces];
+    }
+
+    /**
+     * Returns the number of games counted, finished or not.
+     *
+     * @return games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the number of games that hit the step limit, which count for no card.
+     *
+     * @return unfinished games
+     */
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    /**
+     * Returns the table of all 52 cards from the strongest to the weakest, followed by the aces table.
+     *
+     * @return table
+     */
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%d games, %d unfinished%n", games, unfinished));
+        table.append(String.format("%-5s %14s %14s %9s%n", "card", "wins", "losses", "contrib"));
+        Integer[] order = new Integer[Card.STANDARD_DECK_SIZE];
+        for (int c = 0; c < order.length; c++)
+            order[c] = c;
+        Arrays.sort(order, (a, b) -> Double.compare(getContribution(b), getContribution(a)));
+        for (int c : order) {
+            table.append(String.format("%-5s %14d %14d %+9.5f%n", Card.fromOrdinal(c), wins[c], losses[c],
+                    getContribution(c)));
+        }
+        table.append(String.format("%-5s %14s %14s %9s%n", "aces", "hands", "wins", "win rate"));
+        for (int a = 0; a < aceHands.length; a++) {
+            table.append(String.format("%-5d %14d %14d %9.5f%n", a, aceHands[a], aceWins[a],
+                    aceHands[a] == 0 ? 0.0 : (double) aceWins[a] / aceHands[a]));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Prints the strength table of many games.
+     * Usage: CardStrength [games] [threads] [seed] [maxSteps] [random]
+     *
+     * @param args command line arguments
+     * @throws InterruptedException if interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        long maxSteps = args.length > 3 ? Long.parseLong(args[3]) : 50_000;
+        boolean randomPickup = args.length > 4 && args[4].equals("random");
+
+        long start = System.nanoTime();
+        CardStrength strength = simulate(seed, games, threads, maxSteps, randomPickup);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.print(strength);
+        System.out.printf("%.1f s on %d threads, %.0f games/s%n", seconds, threads, games / seconds);
+    }
+}
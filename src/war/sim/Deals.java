@@ -0,0 +1,71 @@
+package war.sim;
+
+import war.DealGenerator;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Shuffles decks of card ordinals for {@link war.HeadlessGame}. Every game of a simulation has its own index, and
+ * {@link #deal(long, long, byte[])} always gives the same deal for the same seed and index, so a range of games can be
+ * played anywhere (another thread, another process) and in any order with the same result.
+ *
+ * @author Komron Valijonov
+ */
+public final class Deals {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private Deals() {
+    }
+
+    /**
+     * Shuffles the deck for the game with the given index.
+     *
+     * @param seed of the simulation
+     * @param game index of the game
+     * @param deck full deck of ordinals to shuffle (in any order)
+     */
+    public static void deal(long seed, long game, byte[] deck) {
+        reset(deck);
+        shuffle(deck, random(seed, game));
+    }
+
+    /**
+     * Returns the random numbers of the game with the given index, the ones {@link #deal(long, long, byte[])}
+     * shuffles with. Anything else the game needs at random can be taken from the same generator after the deal.
+     *
+     * @param seed of the simulation
+     * @param game index of the game
+     * @return new generator
+     */
+    public static SplittableRandom random(long seed, long game) {
+        return new SplittableRandom(mix(seed + game * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Puts the ordinals of a full deck into the array in order (see {@link DealGenerator#reset}).
+     *
+     * @param deck of {@link war.Card#STANDARD_DECK_SIZE} ordinals
+     */
+    public static void reset(byte[] deck) {
+        DealGenerator.reset(deck);
+    }
+
+    /**
+     * Shuffles a deck with the one shuffle of the program (see {@link DealGenerator#shuffle}).
+     *
+     * @param deck   of ordinals
+     * @param random source of randomness
+     */
+    public static void shuffle(byte[] deck, RandomGenerator random) {
+        DealGenerator.shuffle(deck, random);
+    }
+
+    private static long mix(long z) {
+        // the finalizer of SplitMix64, so neighbouring games get unrelated random streams
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,84 @@
+package war.sim;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the result of a {@link MonteCarloEstimator}: the estimate, its confidence interval and what it cost.
+ *
+ * @author Komron Valijonov
+ */
+public final class Estimate {
+    private final MonteCarloEstimator.Metric metric;
+    private final double mean, halfWidth;
+    private final long games, unfinished;
+    private final boolean converged;
+
+    Estimate(MonteCarloEstimator.Metric metric, RunningStats stats, double halfWidth, long games, long unfinished,
+             boolean converged) {
+        this.metric = metric;
+        this.mean = stats.getMean();
+        this.halfWidth = halfWidth;
+        this.games = games;
+        this.unfinished = unfinished;
+        this.converged = converged;
+    }
+
+    /**
+     * Returns what was estimated.
+     *
+     * @return metric
+     */
+    public MonteCarloEstimator.Metric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Returns the estimate.
+     *
+     * @return mean of the sample
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the half width of the confidence interval, the estimate being within getMean() +- getHalfWidth().
+     *
+     * @return half width of the confidence interval
+     */
+    public double getHalfWidth() {
+        return halfWidth;
+    }
+
+    /**
+     * Returns the number of games played.
+     *
+     * @return games played, including unfinished ones
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the number of games that hit the step limit without a winner.
+     *
+     * @return unfinished games
+     */
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    /**
+     * Returns true if the requested precision was reached, false if the estimator ran out of games first.
+     *
+     * @return true if precise enough
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s = %.6f +- %.6f (%d games, %d unfinished%s)", metric, mean, halfWidth, games,
+                unfinished, converged ? "" : ", not converged");
+    }
+}
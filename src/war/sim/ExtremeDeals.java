@@ -0,0 +1,281 @@
+package war.sim;
+
+import war.Card;
+import war.DealGenerator;
+import war.HeadlessGame;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a search for extreme starting deals: the longest games, the longest chains of wars in a row and the
+ * quickest wipeouts. Every thread climbs from a random deal by swapping two cards at a time, playing every deal out
+ * headless ({@link HeadlessGame}) to score it and keeping the swap if the score did not drop; after too many swaps
+ * without a better score it starts again from a new random deal.
+ * <p>
+ * The best deals found by all threads are kept in one shared sorted set of limited size, and can be saved and loaded
+ * as text, one deal per line after its score (see {@link DealGenerator#encode}). Games that hit the step limit have
+ * no score.
+ *
+ * @author Komron Valijonov
+ */
+public class ExtremeDeals {
+    private static final int RESTART_AFTER = 2_000;  // swaps without a better score before starting again
+
+    private final Objective objective;
+    private final int size;
+    private final long maxSteps;
+    private final ConcurrentSkipListSet<Found> best = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong((Found f) -> f.score).thenComparing(f -> f.deal));
+    private final AtomicInteger count = new AtomicInteger();  // size of best, which the set cannot tell quickly
+    private volatile long threshold = Long.MIN_VALUE;  // score to beat once the set is full
+
+    /**
+     * What makes a deal extreme.
+     */
+    public static enum Objective {
+        LONGEST_GAME,  // most turns
+        LONGEST_WAR_CHAIN,  // most wars in a row within a turn
+        QUICKEST_WIPEOUT;  // fewest turns
+
+        /**
+         * Scores a game that has been played out, higher is better.
+         *
+         * @param game played game
+         * @return score, or {@link Long#MIN_VALUE} if the game did not end
+         */
+        long score(HeadlessGame game) {
+            if (!game.isGameOver())
+                return Long.MIN_VALUE;
+            switch (this) {
+                case LONGEST_GAME:
+                    return game.getTurns();
+                case LONGEST_WAR_CHAIN:
+                    return game.getMaxWarDepth();
+                default:
+                    return -game.getTurns();
+            }
+        }
+    }
+
+    /**
+     * Creates an empty search.
+     *
+     * @param objective what to search for
+     * @param size      number of best deals to keep
+     * @param maxSteps  steps after which a game counts as not ending
+     */
+    public ExtremeDeals(Objective objective, int size, long maxSteps) {
+        if (size < 1 || maxSteps < 1)
+            throw new IllegalArgumentException("Size and steps must be positive");
+        this.objective = objective;
+        this.size = size;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Searches on a {@link ParallelRunner}. Every thread gets its own random numbers from the seed, so the deals tried
+     * do not depend on timing, although which of two equally good deals is kept may.
+     *
+     * @param threads number of threads
+     * @param swaps   swaps each thread tries
+     * @param seed    for the random deals and swaps
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public void search(int threads, long swaps, long seed) throws InterruptedException {
+        // split in thread order before any thread starts, so every thread gets the same numbers every time
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[threads];
+        for (int t = 0; t < threads; t++)
+            randoms[t] = root.split();
+        ParallelRunner.runOnEachThread("war-extreme", threads, t -> {
+            climb(randoms[t], swaps);
+            return null;
+        });
+    }
+
+    private void climb(SplittableRandom random, long swaps) {
+        HeadlessGame game = new HeadlessGame();
+        byte[] deck = new byte[Card.STANDARD_DECK_SIZE];
+        Deals.reset(deck);
+        long current = Long.MIN_VALUE;
+        int stale = RESTART_AFTER;
+        for (long s = 0; s < swaps && !Thread.currentThread().isInterrupted(); s++) {
+            if (stale >= RESTART_AFTER) {
+                Deals.shuffle(deck, random);
+                current = score(game, deck);
+                stale = 0;
+                continue;
+            }
+            int i = random.nextInt(deck.length), j = random.nextInt(deck.length - 1);
+            if (j >= i)
+                j++;
+            swap(deck, i, j);
+            long score = score(game, deck);
+            if (score > current)
+                stale = 0;
+            else
+                stale++;
+            if (score >= current)
+                current = score;
+            else
+                swap(deck, i, j);  // undo
+        }
+    }
+
+    private long score(HeadlessGame game, byte[] deck) {
+        game.deal(deck, 0);
+        game.playOut(maxSteps);
+        long score = objective.score(game);
+        if (score > threshold)
+            offer(score, DealGenerator.encode(deck, 0));
+        return score;
+    }
+
+    private static void swap(byte[] deck, int i, int j) {
+        byte card = deck[i];
+        deck[i] = deck[j];
+        deck[j] = card;
+    }
+
+    /**
+     * Offers a deal to the best deals, which keeps it if it is among the best so far.
+     *
+     * @param score of the deal
+     * @param deal  as text
+     */
+    public void offer(long score, String deal) {
+        if (score == Long.MIN_VALUE || (count.get() >= size && score <= threshold))
+            return;
+        if (!best.add(new Found(score, deal)))
+            return;  // already known
+        if (count.incrementAndGet() > size && best.pollFirst() != null)
+            count.decrementAndGet();
+        if (count.get() >= size)
+            threshold = best.first().score;
+    }
+
+    /**
+     * Returns the best deals, best first.
+     *
+     * @return scores and deals
+     */
+    public List<Found> getBest() {
+        List<Found> found = new ArrayList<>(best.descendingSet());
+        return found.size() > size ? found.subList(0, size) : found;
+    }
+
+    /**
+     * Writes the best deals to a text file, one per line as the score, a tab and the deal.
+     *
+     * @param path of the file, replaced as a whole
+     * @throws IOException if writing fails
+     */
+    public void save(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.US_ASCII)) {
+            out.write("# " + objective + "\n");
+            for (Found found : getBest())
+                out.write(found.score + "\t" + found.deal + "\n");
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds the deals of a file written by {@link #save}, scored again so a file from other settings can be used.
+     *
+     * @param path of the file
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if a line is not a deal
+     */
+    public void load(Path path) throws IOException {
+        HeadlessGame game = new HeadlessGame();
+        byte[] deck = new byte[Card.STANDARD_DECK_SIZE];
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                DealGenerator.decode(line.substring(line.indexOf('\t') + 1), deck, 0);
+                game.deal(deck, 0);
+                game.playOut(maxSteps);
+                offer(objective.score(game), DealGenerator.encode(deck, 0));
+            }
+        }
+    }
+
+    /**
+     * A deal and its score.
+     */
+    public static final class Found {
+        private final long score;
+        private final String deal;
+
+        Found(long score, String deal) {
+            this.score = score;
+            this.deal = deal;
+        }
+
+        public long getScore() {
+            return score;
+        }
+
+        public String getDeal() {
+            return deal;
+        }
+
+        @Override
+        public String toString() {
+            return score + " " + deal;
+        }
+    }
+
+    /**
+     * Searches for extreme deals and saves the best ones, adding to the file if it exists.
+     * Usage: ExtremeDeals objective file [swaps] [threads] [seed] [size] [maxSteps]
+     *
+     * @param args command line arguments
+     * @throws IOException          if the file cannot be read or written
+     * @throws InterruptedException if interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: ExtremeDeals LONGEST_GAME|LONGEST_WAR_CHAIN|QUICKEST_WIPEOUT file "
+                    + "[swaps] [threads] [seed] [size] [maxSteps]");
+            System.exit(2);
+        }
+        Objective objective = Objective.valueOf(args[0]);
+        Path path = Paths.get(args[1]);
+        long swaps = args.length > 2 ? Long.parseLong(args[2]) : 1_000_000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : new SplittableRandom().nextLong();
+        int size = args.length > 5 ? Integer.parseInt(args[5]) : 100;
+        long maxSteps = args.length > 6 ? Long.parseLong(args[6]) : 50_000;
+
+        ExtremeDeals search = new ExtremeDeals(objective, size, maxSteps);
+        if (Files.exists(path))
+            search.load(path);
+        long start = System.nanoTime();
+        search.search(threads, swaps, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        search.save(path);
+
+        List<Found> best = search.getBest();
+        System.out.printf("%d deals tried in %.1f s on %d threads (seed %d)%n", swaps * threads, seconds, threads,
+                seed);
+        for (int i = 0; i < Math.min(10, best.size()); i++)
+            System.out.println(best.get(i));
+    }
+}
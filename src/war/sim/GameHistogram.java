@@ -0,0 +1,236 @@
+package war.sim;
+
+import war.HeadlessGame;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the outcome of many simulated games: who won, how many games hit the step limit and a histogram of the
+ * game lengths (in turns). Everything is counted in whole numbers, so histograms can be merged in any order, sent
+ * between processes and saved with exactly the same result.
+ *
+ * @author Komron Valijonov
+ */
+public final class GameHistogram {
+    private final int bucketWidth;
+    private final long[] buckets;  // games by length, the last bucket also holds all longer games
+    private long wins1, wins2, unfinished, turns, wars;
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param bucketWidth turns per bucket
+     * @param buckets     number of buckets
+     */
+    public GameHistogram(int bucketWidth, int buckets) {
+        if (bucketWidth < 1 || buckets < 1)
+            throw new IllegalArgumentException("Bucket width and count must be positive");
+        this.bucketWidth = bucketWidth;
+        this.buckets = new long[buckets];
+    }
+
+    /**
+     * Creates an empty histogram with the same buckets as another one.
+     *
+     * @param other histogram to copy the buckets of
+     * @return empty histogram
+     */
+    public static GameHistogram like(GameHistogram other) {
+        return new GameHistogram(other.bucketWidth, other.buckets.length);
+    }
+
+    /**
+     * Adds a game that has been played out (see {@link HeadlessGame#playOut(long)}).
+     *
+     * @param game played game
+     */
+    public void add(HeadlessGame game) {
+        if (!game.isGameOver()) {
+            unfinished++;
+            return;
+        }
+        if (game.getWinner() == 1)
+            wins1++;
+        else
+            wins2++;
+        turns += game.getTurns();
+        wars += game.getWars();
+        buckets[(int) Math.min(game.getTurns() / bucketWidth, buckets.length - 1)]++;
+    }
+
+    /**
+     * Adds all games of another histogram to this one.
+     *
+     * @param other histogram with the same buckets, not changed
+     */
+    public void merge(GameHistogram other) {
+        if (other.bucketWidth != bucketWidth || other.buckets.length != buckets.length)
+            throw new IllegalArgumentException("Histograms have different buckets");
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] += other.buckets[i];
+        wins1 += other.wins1;
+        wins2 += other.wins2;
+        unfinished += other.unfinished;
+        turns += other.turns;
+        wars += other.wars;
+    }
+
+    /**
+     * Writes the histogram to a stream.
+     *
+     * @param out stream to write to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(bucketWidth);
+        out.writeInt(buckets.length);
+        for (long count : buckets)
+            out.writeLong(count);
+        out.writeLong(wins1);
+        out.writeLong(wins2);
+        out.writeLong(unfinished);
+        out.writeLong(turns);
+        out.writeLong(wars);
+    }
+
+    /**
+     * Reads a histogram written by {@link #write(DataOutput)}.
+     *
+     * @param in stream to read from
+     * @return histogram
+     * @throws IOException if reading fails
+     */
+    public static GameHistogram read(DataInput in) throws IOException {
+        int bucketWidth = in.readInt(), count = in.readInt();
+        if (bucketWidth < 1 || count < 1 || count > 1 << 20)
+            throw new IOException("Invalid histogram");
+        GameHistogram histogram = new GameHistogram(bucketWidth, count);
+        for (int i = 0; i < count; i++)
+            histogram.buckets[i] = in.readLong();
+        histogram.wins1 = in.readLong();
+        histogram.wins2 = in.readLong();
+        histogram.unfinished = in.readLong();
+        histogram.turns = in.readLong();
+        histogram.wars = in.readLong();
+        return histogram;
+    }
+
+    /**
+     * Returns the number of games, finished or not.
+     *
+     * @return games
+     */
+    public long getGames() {
+        return wins1 + wins2 + unfinished;
+    }
+
+    /**
+     * Returns the number of games won by player 1 or 2.
+     *
+     * @param p1 true for player 1
+     * @return games won
+     */
+    public long getWins(boolean p1) {
+        return p1 ? wins1 : wins2;
+    }
+
+    /**
+     * Returns the number of games that hit the step limit.
+     *
+     * @return unfinished games
+     */
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    /**
+     * Returns the total number of turns of all finished games.
+     *
+     * @return turns
+     */
+    public long getTurns() {
+        return turns;
+    }
+
+    /**
+     * Returns the total number of wars of all finished games.
+     *
+     * @return wars
+     */
+    public long getWars() {
+        return wars;
+    }
+
+    /**
+     * Returns the number of finished games whose length falls into a bucket.
+     *
+     * @param bucket index, bucket i holding games of i * width to (i + 1) * width - 1 turns
+     * @return games
+     */
+    public long getBucket(int bucket) {
+        return buckets[bucket];
+    }
+
+    /**
+     * Returns the number of buckets.
+     *
+     * @return buckets
+     */
+    public int getBucketCount() {
+        return buckets.length;
+    }
+
+    /**
+     * Returns the number of turns per bucket.
+     *
+     * @return bucket width
+     */
+    public int getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Returns the smallest length that at least the given fraction of finished games do not exceed,
+     * rounded up to the end of its bucket.
+     *
+     * @param fraction between 0 and 1
+     * @return turns, 0 if no game finished
+     */
+    public long getPercentile(double fraction) {
+        long finished = wins1 + wins2, seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (finished > 0 && seen >= Math.ceil(fraction * finished))
+                return (long) (i + 1) * bucketWidth - 1;
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof GameHistogram))
+            return false;
+        GameHistogram other = (GameHistogram) o;
+        return bucketWidth == other.bucketWidth && wins1 == other.wins1 && wins2 == other.wins2
+                && unfinished == other.unfinished && turns == other.turns && wars == other.wars
+                && Arrays.equals(buckets, other.buckets);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(buckets) + Long.hashCode(wins1 * 31 + wins2 + turns);
+    }
+
+    @Override
+    public String toString() {
+        long finished = wins1 + wins2;
+        return String.format("%d games: player 1 won %d, player 2 won %d, %d unfinished; "
+                        + "mean %.1f turns, %.2f wars; median %d, p99 %d turns",
+                getGames(), wins1, wins2, unfinished, finished == 0 ? 0.0 : (double) turns / finished,
+                finished == 0 ? 0.0 : (double) wars / finished, getPercentile(0.5), getPercentile(0.99));
+    }
+}
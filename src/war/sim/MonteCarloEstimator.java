@@ -0,0 +1,165 @@
+package war.sim;
+
+import war.Card;
+import war.HeadlessGame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a Monte Carlo estimator of statistics of "War" that plays only as many games as it needs.
+ * Games are played by the {@link war.WarModel} rules (see {@link HeadlessGame}) in batches on several threads.
+ * Every batch keeps its own {@link RunningStats}; after each round of batches they are merged and the estimator stops
+ * as soon as the confidence interval of the mean is as narrow as requested.
+ * <p>
+ * Some deals never end (the cards keep cycling), so every game is limited to {@link #setMaxSteps(long)} steps.
+ * Such games are counted as unfinished, are left out of the game length and are not a win for player 1.
+ * <p>
+ * Batch seeds are split from the estimator's seed in order and batches are merged in order, so the same settings
+ * always give the same estimate.
+ *
+ * @author Komron Valijonov
+ */
+public class MonteCarloEstimator {
+    public static final double Z_95 = 1.959963984540054;  // normal quantiles for common confidence levels
+    public static final double Z_99 = 2.5758293035489004;
+
+    /**
+     * What is estimated.
+     */
+    public enum Metric {
+        /** Turns (cards drawn face up) in a finished game. */
+        GAME_LENGTH,
+        /** 1 if player 1 won the game, 0 otherwise. */
+        FIRST_PLAYER_WINS
+    }
+
+    private final int threads, batchSize;
+    private final long seed;
+    private long maxSteps = 50_000;
+    private long minGames = 1_000, maxGames = 100_000_000;
+    private double z = Z_95;
+
+    /**
+     * Creates a new estimator.
+     *
+     * @param threads   number of threads to play games on
+     * @param batchSize games per batch
+     * @param seed      for the deals
+     */
+    public MonteCarloEstimator(int threads, int batchSize, long seed) {
+        if (threads < 1 || batchSize < 1)
+            throw new IllegalArgumentException("Threads and batch size must be positive");
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the most steps a game may take before it is given up as unfinished.
+     *
+     * @param maxSteps step limit per game
+     */
+    public void setMaxSteps(long maxSteps) {
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Sets the fewest and the most games to play, the fewest guarding against stopping on a lucky early variance.
+     *
+     * @param minGames games to play at least
+     * @param maxGames games to play at most, even if the precision has not been reached
+     */
+    public void setGameLimits(long minGames, long maxGames) {
+        if (minGames < 2 || maxGames < minGames)
+            throw new IllegalArgumentException("Invalid game limits " + minGames + ".." + maxGames);
+        this.minGames = minGames;
+        this.maxGames = maxGames;
+    }
+
+    /**
+     * Sets the confidence level of the interval as a quantile of the normal distribution.
+     *
+     * @param z quantile, {@link #Z_95} by default
+     */
+    public void setConfidence(double z) {
+        this.z = z;
+    }
+
+    /**
+     * Plays games until the confidence interval of the metric is at most +- halfWidth wide.
+     *
+     * @param metric    to estimate
+     * @param halfWidth of the confidence interval
+     * @param relative  true if halfWidth is a fraction of the estimate (0.001 for +-0.1%), false if it is absolute
+     * @return estimate and the number of games it took
+     * @throws InterruptedException if interrupted while waiting for a batch
+     */
+    public Estimate estimate(Metric metric, double halfWidth, boolean relative) throws InterruptedException {
+        if (!(halfWidth > 0))
+            throw new IllegalArgumentException("Half width must be positive");
+        ExecutorService executor = ParallelRunner.newPool("war-estimator", threads);
+        try {
+            SplittableRandom seeds = new SplittableRandom(seed);
+            RunningStats stats = new RunningStats();
+            long games = 0, unfinished = 0;
+            List<Future<Batch>> round = new ArrayList<>(threads);
+            while (true) {
+                for (int i = 0; i < threads; i++) {
+                    SplittableRandom random = seeds.split();
+                    round.add(executor.submit(() -> play(metric, random)));
+                }
+                for (Future<Batch> future : round) {
+                    Batch batch = future.get();
+                    stats.merge(batch.stats);
+                    unfinished += batch.unfinished;
+                }
+                round.clear();
+                games += (long) threads * batchSize;
+
+                double width = z * stats.getStandardError();
+                double target = relative ? halfWidth * Math.abs(stats.getMean()) : halfWidth;
+                if (stats.getCount() >= minGames && width <= target)
+                    return new Estimate(metric, stats, width, games, unfinished, true);
+                if (games >= maxGames)
+                    return new Estimate(metric, stats, width, games, unfinished, false);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Batch play(Metric metric, SplittableRandom random) {
+        HeadlessGame game = new HeadlessGame();
+        byte[] deck = new byte[Card.STANDARD_DECK_SIZE];
+        Deals.reset(deck);
+        Batch batch = new Batch();
+        for (int g = 0; g < batchSize; g++) {
+            Deals.shuffle(deck, random);
+            game.deal(deck, 0);
+            int winner = game.playOut(maxSteps);
+            if (winner == 0)
+                batch.unfinished++;
+            if (metric == Metric.FIRST_PLAYER_WINS)
+                batch.stats.add(winner == 1 ? 1 : 0);
+            else if (winner != 0)
+                batch.stats.add(game.getTurns());
+        }
+        return batch;
+    }
+
+    /**
+     * The result of one batch of games.
+     */
+    private static final class Batch {
+        private final RunningStats stats = new RunningStats();
+        private long unfinished;
+    }
+}
@@ -0,0 +1,156 @@
+package war.sim;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the thread pool every simulation runs its games on. Work is either split into chunks of consecutive
+ * indexes, whose results are merged in index order on the calling thread as they complete, or handed out as one task
+ * per thread. Either way the pool is made of daemon threads and is shut down when the run ends.
+ * <p>
+ * A checked exception of a task or a merge is thrown as it is; anything else a task throws is wrapped in an
+ * {@link IllegalStateException}.
+ *
+ * @author Komron Valijonov
+ */
+public final class ParallelRunner {
+    private static final int IN_FLIGHT = 4;  // chunks per thread submitted ahead of the one being merged
+
+    private ParallelRunner() {
+    }
+
+    /**
+     * Works on the indexes from one to another, excluding the last.
+     *
+     * @param <T> result of a chunk
+     * @param <E> checked exception the chunk may throw
+     */
+    @FunctionalInterface
+    public interface ChunkTask<T, E extends Exception> {
+        T run(long from, long to) throws E;
+    }
+
+    /**
+     * Works on the share of one thread.
+     *
+     * @param <T> result of the thread
+     * @param <E> checked exception the task may throw
+     */
+    @FunctionalInterface
+    public interface ThreadTask<T, E extends Exception> {
+        T run(int thread) throws E;
+    }
+
+    /**
+     * Takes the result of a chunk, always on the thread that started the run.
+     *
+     * @param <T> result of a chunk
+     * @param <E> checked exception the merge may throw
+     */
+    @FunctionalInterface
+    public interface Merger<T, E extends Exception> {
+        void merge(T result) throws E;
+    }
+
+    /**
+     * Creates a pool of daemon threads, so a simulation never keeps the program alive.
+     *
+     * @param name    of the threads
+     * @param threads number of threads
+     * @return pool, to be shut down by the caller
+     */
+    public static ExecutorService newPool(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs a task for every chunk of the indexes from 0 to count and merges the results in index order. A few chunks
+     * per thread are in flight at a time, so results never pile up however many chunks there are.
+     *
+     * @param name    of the threads
+     * @param threads number of threads
+     * @param count   number of indexes
+     * @param chunk   indexes per chunk
+     * @param task    to run for every chunk
+     * @param merger  to take the results
+     * @param <T>     result of a chunk
+     * @param <E>     checked exception the task or merger may throw
+     * @throws E                    if a task or the merger throws it
+     * @throws InterruptedException if interrupted while waiting for a chunk
+     */
+    public static <T, E extends Exception> void runChunks(String name, int threads, long count, int chunk,
+                                                          ChunkTask<T, E> task, Merger<T, E> merger)
+            throws E, InterruptedException {
+        ExecutorService executor = newPool(name, threads);
+        try {
+            Deque<Future<T>> pending = new ArrayDeque<>();
+            long next = 0;
+            while (next < count || !pending.isEmpty()) {
+                while (next < count && pending.size() < IN_FLIGHT * threads) {
+                    long from = next, to = Math.min(count, next + chunk);
+                    pending.add(executor.submit(() -> task.run(from, to)));
+                    next = to;
+                }
+                merger.merge(pending.poll().get());
+            }
+        } catch (ExecutionException e) {
+            throw ParallelRunner.<E>unwrap(name, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a task on every thread and waits for all of them.
+     *
+     * @param name    of the threads
+     * @param threads number of threads
+     * @param task    to run on every thread, given the number of the thread from 0
+     * @param <T>     result of a thread
+     * @param <E>     checked exception the task may throw
+     * @return results in thread order
+     * @throws E                    if a task throws it
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static <T, E extends Exception> List<T> runOnEachThread(String name, int threads, ThreadTask<T, E> task)
+            throws E, InterruptedException {
+        ExecutorService executor = newPool(name, threads);
+        try {
+            List<Future<T>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> task.run(thread)));
+            }
+            List<T> results = new ArrayList<>(threads);
+            for (Future<T> future : futures)
+                results.add(future.get());
+            return results;
+        } catch (ExecutionException e) {
+            throw ParallelRunner.<E>unwrap(name, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the exception a task failed with, if it is the checked exception the task declares.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> E unwrap(String name, ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception && !(cause instanceof RuntimeException))
+            return (E) cause;  // a task can only throw the checked exception it declares
+        throw new IllegalStateException(name + " failed", cause);
+    }
+}
@@ -0,0 +1,88 @@
+package war.sim;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the running mean and variance of a sample, updated one value at a time with Welford's method so it
+ * stays accurate over millions of values. Two running statistics can be merged (Chan et al.), which lets every
+ * thread keep its own and combine them afterwards.
+ *
+ * @author Komron Valijonov
+ */
+public final class RunningStats {
+    private long count;
+    private double mean, m2;  // m2 is the sum of squared differences from the mean
+
+    /**
+     * Adds a value to the sample.
+     *
+     * @param value to add
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    /**
+     * Adds all values of another sample to this one.
+     *
+     * @param other sample to merge, not changed
+     */
+    public void merge(RunningStats other) {
+        if (other.count == 0)
+            return;
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+    }
+
+    /**
+     * Returns the number of values in the sample.
+     *
+     * @return sample size
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the sample.
+     *
+     * @return mean, 0 if the sample is empty
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the (unbiased) variance of the sample.
+     *
+     * @return variance, 0 for fewer than two values
+     */
+    public double getVariance() {
+        return count < 2 ? 0 : m2 / (count - 1);
+    }
+
+    /**
+     * Returns the standard error of the mean.
+     *
+     * @return standard deviation divided by the square root of the sample size
+     */
+    public double getStandardError() {
+        return count < 2 ? Double.POSITIVE_INFINITY : Math.sqrt(getVariance() / count);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d, mean=%.6f, sd=%.6f", count, mean, Math.sqrt(getVariance()));
+    }
+}
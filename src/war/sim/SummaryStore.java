@@ -0,0 +1,279 @@
+package war.sim;
+
+import war.Card;
+import war.HeadlessGame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a store of game summaries outside the Java heap, for more games than the heap could hold. Every game is
+ * a fixed-width record of {@value #RECORD_SIZE} bytes (turns, wars, steps, winner and longest war chain) at the
+ * position of its index, in chunks of direct {@link ByteBuffer}s, or of a memory-mapped file so the store can be
+ * bigger than memory and kept. A file starts with a header of the same size holding the number of records up to the
+ * last game written, as of the last {@link #force()}.
+ * <p>
+ * Filters get the fields of each record as plain numbers, so scans and counts run over the records without creating
+ * any objects, split over as many threads as asked for (see {@link ParallelRunner}). Games can be written from any
+ * number of threads, each to its own index.
+ *
+ * @author Komron Valijonov
+ */
+public class SummaryStore {
+    public static final int RECORD_SIZE = 16;
+    private static final int CHUNK_RECORDS = 1 << 26;  // 1 GB per chunk
+    private static final int FILL_CHUNK = 100_000;  // games per task when filling from main
+    private static final int TURNS = 0, WARS = 4, STEPS = 8, WINNER = 12, WAR_DEPTH = 13, FLAGS = 14;  // offsets
+    private static final byte PRESENT = 1;  // flag of a record that was written
+    private static final int MAGIC = 0x5753554d;  // "WSUM"
+    private static final int HEADER_SIZE = RECORD_SIZE;  // magic, reserved, size
+
+    private final long capacity;
+    private final ByteBuffer[] chunks;
+    private final MappedByteBuffer header;  // null for a store in direct memory
+    private final AtomicLong size = new AtomicLong();  // highest index written + 1
+
+    /**
+     * Tests the fields of a record. Called from several threads at once.
+     */
+    @FunctionalInterface
+    public interface Filter {
+        /**
+         * Returns true to select a game.
+         *
+         * @param turns       turns played
+         * @param wars        wars fought
+         * @param steps       steps taken
+         * @param winner      1 or 2, or 0 if the game did not end
+         * @param maxWarDepth most wars in a row
+         * @return true if the game is selected
+         */
+        boolean test(int turns, int wars, int steps, int winner, int maxWarDepth);
+    }
+
+    /**
+     * Creates a store in direct memory.
+     *
+     * @param capacity number of games there is room for
+     */
+    public SummaryStore(long capacity) {
+        this.capacity = capacity;
+        this.chunks = new ByteBuffer[chunkCount(capacity)];
+        for (int c = 0; c < chunks.length; c++)
+            chunks[c] = ByteBuffer.allocateDirect(chunkBytes(c));
+        this.header = null;
+    }
+
+    /**
+     * Opens a store in a memory-mapped file, creating or growing the file as needed. Games in the file as of the
+     * last {@link #force()} can be scanned again.
+     *
+     * @param file     to keep the records in
+     * @param capacity number of games there is room for, at least as many as the file holds
+     * @throws IOException if the file cannot be mapped or is not a store
+     */
+    public SummaryStore(Path file, long capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            boolean created = channel.size() == 0;
+            if (!created && channel.size() < HEADER_SIZE)
+                throw new IOException("Not a summary store: " + file);
+            long held = Math.max(0, channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            this.capacity = Math.max(capacity, held);
+            this.chunks = new ByteBuffer[chunkCount(this.capacity)];
+            // the mappings stay valid after the channel is closed
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (created) {
+                header.putInt(0, MAGIC);
+            } else {
+                long written = header.getLong(8);
+                if (header.getInt(0) != MAGIC || written < 0 || written > held)
+                    throw new IOException("Not a summary store: " + file);
+                size.set(written);
+            }
+            for (int c = 0; c < chunks.length; c++) {
+                chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_SIZE + (long) c * CHUNK_RECORDS * RECORD_SIZE, chunkBytes(c));
+            }
+        }
+    }
+
+    private static int chunkCount(long capacity) {
+        if (capacity < 1 || (capacity + CHUNK_RECORDS - 1) / CHUNK_RECORDS > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        return (int) ((capacity + CHUNK_RECORDS - 1) / CHUNK_RECORDS);
+    }
+
+    private int chunkBytes(int chunk) {
+        return (int) Math.min(CHUNK_RECORDS, capacity - (long) chunk * CHUNK_RECORDS) * RECORD_SIZE;
+    }
+
+    /**
+     * Writes the summary of a game that has been played out (see {@link HeadlessGame#playOut(long)}).
+     *
+     * @param index of the game
+     * @param game  played game
+     */
+    public void put(long index, HeadlessGame game) {
+        if (index < 0 || index >= capacity)
+            throw new IndexOutOfBoundsException("No room for game " + index + " in a store of " + capacity);
+        ByteBuffer chunk = chunks[(int) (index / CHUNK_RECORDS)];
+        int offset = (int) (index % CHUNK_RECORDS) * RECORD_SIZE;
+        chunk.putInt(offset + TURNS, clamp(game.getTurns()));
+        chunk.putInt(offset + WARS, clamp(game.getWars()));
+        chunk.putInt(offset + STEPS, clamp(game.getSteps()));
+        chunk.put(offset + WINNER, (byte) (game.isGameOver() ? game.getWinner() : 0));
+        chunk.put(offset + WAR_DEPTH, (byte) Math.min(Byte.MAX_VALUE, game.getMaxWarDepth()));
+        chunk.put(offset + FLAGS, PRESENT);
+        size.accumulateAndGet(index + 1, Math::max);
+    }
+
+    private static int clamp(long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
+    }
+
+    /**
+     * Counts the games a filter selects.
+     *
+     * @param filter  to select games with
+     * @param threads number of threads to scan on
+     * @return games selected
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public long count(Filter filter, int threads) throws InterruptedException {
+        long total = 0;
+        for (long count : scan(filter, null, threads))
+            total += count;
+        return total;
+    }
+
+    /**
+     * Hands the index of every game a filter selects to a consumer, from several threads at once and in no
+     * particular order.
+     *
+     * @param filter   to select games with
+     * @param consumer of the indexes selected, safe to call from several threads
+     * @param threads  number of threads to scan on
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public void forEach(Filter filter, LongConsumer consumer, int threads) throws InterruptedException {
+        scan(filter, consumer, threads);
+    }
+
+    private List<Long> scan(Filter filter, LongConsumer consumer, int threads) throws InterruptedException {
+        long end = size.get();
+        long slice = (end + threads - 1) / threads;
+        return ParallelRunner.runOnEachThread("war-summaries", threads, t -> {
+            long from = Math.min(end, t * slice), to = Math.min(end, from + slice);
+            return scan(filter, consumer, from, to);
+        });
+    }
+
+    private long scan(Filter filter, LongConsumer consumer, long from, long to) {
+        long count = 0;
+        for (long index = from; index < to; ) {
+            ByteBuffer chunk = chunks[(int) (index / CHUNK_RECORDS)];
+            long chunkEnd = Math.min(to, (index / CHUNK_RECORDS + 1) * CHUNK_RECORDS);
+            // absolute reads only, so threads can share the chunk
+            for (int offset = (int) (index % CHUNK_RECORDS) * RECORD_SIZE; index < chunkEnd;
+                 index++, offset += RECORD_SIZE) {
+                if (chunk.get(offset + FLAGS) != PRESENT)
+                    continue;
+                if (filter.test(chunk.getInt(offset + TURNS), chunk.getInt(offset + WARS),
+                        chunk.getInt(offset + STEPS), chunk.get(offset + WINNER), chunk.get(offset + WAR_DEPTH))) {
+                    count++;
+                    if (consumer != null)
+                        consumer.accept(index);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the records of a store in a file to disk, then the number of records in its header. Games written
+     * meanwhile from other threads may not be counted until the next force. Does nothing for a store in direct
+     * memory.
+     */
+    public void force() {
+        if (header == null)
+            return;
+        long written = size.get();
+        for (ByteBuffer chunk : chunks)
+            ((MappedByteBuffer) chunk).force();
+        // only once the records it counts are on disk
+        header.putLong(8, written);
+        header.force();
+    }
+
+    /**
+     * Returns the number of records up to the last game written, including any that were skipped.
+     *
+     * @return size
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of games there is room for.
+     *
+     * @return capacity
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Fills a store with simulated games (picking up the pool in random order, so almost every game ends) and times
+     * a scan for "games longer than 2000 turns where player 2 won".
+     * Usage: SummaryStore [games] [threads] [file]
+     *
+     * @param args command line arguments
+     * @throws IOException          if the file cannot be mapped
+     * @throws InterruptedException if interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        SummaryStore store = args.length > 2 ? new SummaryStore(Paths.get(args[2]), games) : new SummaryStore(games);
+
+        long start = System.nanoTime();
+        // every game writes its own record, so there is nothing to merge
+        ParallelRunner.runChunks("war-summaries", threads, games, FILL_CHUNK, (from, to) -> {
+            HeadlessGame game = new HeadlessGame();
+            byte[] deck = new byte[Card.STANDARD_DECK_SIZE];
+            for (long g = from; g < to; g++) {
+                SplittableRandom random = Deals.random(42, g);
+                Deals.reset(deck);
+                Deals.shuffle(deck, random);
+                game.deal(deck, 0);
+                game.setRandomPickup(random);
+                game.playOut(50_000);
+                store.put(g, game);
+            }
+            return null;
+        }, ignored -> {
+        });
+        store.force();
+        System.out.printf("%d games stored in %.1f s%n", store.size(), (System.nanoTime() - start) / 1e9);
+
+        for (int round = 0; round < 3; round++) {
+            start = System.nanoTime();
+            long found = store.count((turns, wars, steps, winner, depth) -> turns > 2000 && winner == 2, threads);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games longer than 2000 turns won by player 2, scanned in %.3f s (%.0f records/s)%n",
+                    found, seconds, store.size() / seconds);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package war.sim;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the chance of player 1 winning from a position, as answered by a {@link WinProbabilityService}.
+ *
+ * @author Komron Valijonov
+ */
+public final class WinProbability {
+    private final double probability;
+    private final boolean exact;
+    private final int rollouts;
+
+    WinProbability(double probability, boolean exact, int rollouts) {
+        this.probability = probability;
+        this.exact = exact;
+        this.rollouts = rollouts;
+    }
+
+    /**
+     * Returns the chance of player 1 winning, player 2's being 1 minus this.
+     *
+     * @param p1 true for player 1
+     * @return probability between 0 and 1
+     */
+    public double get(boolean p1) {
+        return p1 ? probability : 1 - probability;
+    }
+
+    /**
+     * Returns true if the game was played out to the end, the probability then being 0 or 1.
+     *
+     * @return true if exact, false if estimated by rollouts
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Returns the number of rollouts the estimate is based on.
+     *
+     * @return rollouts, 0 if exact
+     */
+    public int getRollouts() {
+        return rollouts;
+    }
+
+    @Override
+    public String toString() {
+        return exact ? String.format("%.0f%% (exact)", 100 * probability)
+                : String.format("%.1f%% (%d rollouts)", 100 * probability, rollouts);
+    }
+}
@@ -0,0 +1,180 @@
+package war.sim;
+
+import war.HeadlessGame;
+import war.WarModel;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a service answering "what is the chance of winning from here" for a position: both decks, the pool and
+ * whether a war is being mobilized. The rest of a game is decided by the position, so the service first plays it out.
+ * If that ends within the step limit the answer is exact; if not (the cards are cycling), it is estimated by rollouts
+ * in which the pool is picked up in random order (see {@link HeadlessGame#setRandomPickup}).
+ * <p>
+ * Answers are cached in a bounded least recently used cache keyed by a hash of the position, split into stripes
+ * with a lock each so queries from many sessions rarely wait for each other. Rollouts are seeded from the position,
+ * so a position always gets the same answer, cached or not.
+ *
+ * @author Komron Valijonov
+ */
+public class WinProbabilityService {
+    private static final int STRIPES = 16;  // power of two
+    private static final int KEY_SIZE = HeadlessGame.STATE_SIZE - 3;  // the state without winner and drawn cards
+    private static final int FLAGS = HeadlessGame.STATE_SIZE - 4;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int rollouts;
+    private final long maxSteps;
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+
+    /**
+     * Creates a new service.
+     *
+     * @param cacheSize most positions to cache
+     * @param rollouts  number of rollouts when the game cannot be played out
+     * @param maxSteps  most steps of a playout or rollout
+     */
+    public WinProbabilityService(int cacheSize, int rollouts, long maxSteps) {
+        if (cacheSize < STRIPES || rollouts < 1)
+            throw new IllegalArgumentException("Cache must hold at least " + STRIPES + " positions, rollouts be positive");
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe(cacheSize / STRIPES);
+        this.rollouts = rollouts;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Returns the chance of winning from the current position of a game.
+     *
+     * @param model game to look at, not changed
+     * @return chance of player 1 winning
+     */
+    public WinProbability query(WarModel model) {
+        return query(model.toHeadless(false));
+    }
+
+    /**
+     * Returns the chance of winning from a position.
+     *
+     * @param position to look at, not changed
+     * @return chance of player 1 winning
+     */
+    public WinProbability query(HeadlessGame position) {
+        byte[] state = new byte[HeadlessGame.STATE_SIZE];
+        position.writeState(state, 0);
+        // whether the last turn was a war does not change how the game goes on
+        state[FLAGS] &= ~HeadlessGame.FLAG_WAR;
+        long hash = hash(state);
+        Key key = new Key(Arrays.copyOf(state, KEY_SIZE), hash);
+
+        Stripe stripe = stripes[(int) (hash >>> 32) & (STRIPES - 1)];
+        WinProbability answer;
+        synchronized (stripe) {
+            answer = stripe.get(key);
+        }
+        if (answer != null) {
+            hits.increment();
+            return answer;
+        }
+        misses.increment();
+        // two sessions may work out the same position at the same time, they get the same answer anyway
+        answer = evaluate(state, hash);
+        synchronized (stripe) {
+            stripe.put(key, answer);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     *
+     * @return cache hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of queries that had to be worked out.
+     *
+     * @return cache misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private WinProbability evaluate(byte[] state, long hash) {
+        HeadlessGame game = new HeadlessGame();
+        game.readState(state, 0);
+        int winner = game.playOut(maxSteps);
+        if (winner != 0)
+            return new WinProbability(winner == 1 ? 1 : 0, true, 0);
+
+        // the game cycles, estimate by playing it with random pickups (unfinished rollouts count as half a win)
+        SplittableRandom random = new SplittableRandom(hash);
+        game.setRandomPickup(random);
+        long wins = 0;
+        for (int i = 0; i < rollouts; i++) {
+            game.readState(state, 0);
+            winner = game.playOut(maxSteps);
+            wins += winner == 1 ? 2 : winner == 0 ? 1 : 0;
+        }
+        return new WinProbability(wins / (2.0 * rollouts), false, rollouts);
+    }
+
+    private static long hash(byte[] state) {
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < KEY_SIZE; i++)
+            hash = (hash ^ (state[i] & 0xff)) * 0x100000001b3L;
+        return hash;
+    }
+
+    /**
+     * A position in the cache. The hash picks the stripe and bucket, the state makes sure collisions are not
+     * mistaken for the same position.
+     */
+    private static final class Key {
+        private final byte[] state;
+        private final long hash;
+
+        Key(byte[] state, long hash) {
+            this.state = state;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash && Arrays.equals(((Key) o).state, state);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) hash;
+        }
+    }
+
+    /**
+     * One stripe of the cache, a least recently used map guarded by its own lock.
+     */
+    private static final class Stripe extends LinkedHashMap<Key, WinProbability> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(capacity * 4 / 3 + 1, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, WinProbability> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package war.sim.dist;
+
+import war.sim.GameHistogram;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the coordinator of a simulation spread over several processes. Workers ({@link SimulationWorker})
+ * connect over a socket, are given ranges of game indexes (see {@link war.sim.Deals}) to play and send back a
+ * {@link GameHistogram} for each range, which the coordinator merges.
+ * <p>
+ * Every worker owns a lease on a range of games and is handed it one chunk at a time. A worker that runs out of
+ * games steals the second half of the largest lease left, so workers that fall behind are helped by the others.
+ * If a worker disconnects, the chunk it was playing and the rest of its lease go back to be handed out again.
+ * The merged histogram does not depend on how the games were divided.
+ *
+ * @author Komron Valijonov
+ */
+public class SimulationCoordinator implements Closeable {
+    static final int MAGIC = 0x57415244;  // "WARD"
+    static final int RESULT = 1, WORK = 2, DONE = 3;  // message types
+    public static final int BUCKET_WIDTH = 100, BUCKETS = 500;  // histogram of game lengths up to 50000 turns
+
+    private static final Logger logger = Logger.getLogger(SimulationCoordinator.class.getName());
+
+    private final ServerSocket server;
+    private final long seed, games, maxSteps;
+    private final int chunk;
+    private final GameHistogram result = new GameHistogram(BUCKET_WIDTH, BUCKETS);
+    private final Deque<long[]> unassigned = new ArrayDeque<>();  // ranges nobody has a lease on
+    private final List<Lease> leases = new ArrayList<>();
+    private long completed;
+
+    /**
+     * Creates a coordinator listening on the loopback interface.
+     *
+     * @param port     to listen on, 0 for any free port
+     * @param seed     of the simulation
+     * @param games    number of games to play
+     * @param maxSteps most steps per game
+     * @param chunk    games handed to a worker at a time
+     * @throws IOException if the port cannot be opened
+     */
+    public SimulationCoordinator(int port, long seed, long games, long maxSteps, int chunk) throws IOException {
+        if (games < 0 || chunk < 1)
+            throw new IllegalArgumentException("Invalid number of games or chunk size");
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.seed = seed;
+        this.games = games;
+        this.maxSteps = maxSteps;
+        this.chunk = chunk;
+        if (games > 0)
+            unassigned.add(new long[]{0, games});
+    }
+
+    /**
+     * Returns the port the coordinator listens on.
+     *
+     * @return port for workers to connect to
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Hands out games to the workers that connect until all games have been played.
+     * Waits for workers as long as there are games left, even if none are connected.
+     *
+     * @return merged histogram of all games
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public GameHistogram run() throws InterruptedException {
+        Thread acceptor = new Thread(this::accept, "war-coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            synchronized (this) {
+                while (completed < games)
+                    wait();
+                return result;
+            }
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            logger.warning(e.toString());
+        }
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread handler = new Thread(() -> serve(socket), "war-coordinator-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (SocketException e) {
+                // closed
+            } catch (IOException e) {
+                logger.warning(e.toString());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Lease lease = new Lease();
+        synchronized (this) {
+            leases.add(lease);
+        }
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            out.writeInt(MAGIC);
+            out.writeLong(seed);
+            out.writeLong(maxSteps);
+            out.writeInt(BUCKET_WIDTH);
+            out.writeInt(BUCKETS);
+            out.flush();
+            while (true) {
+                // every request carries the results of the last chunk, empty for the first one
+                if (in.readByte() != RESULT)
+                    throw new IOException("Unexpected message from worker");
+                complete(lease, GameHistogram.read(in));
+                long[] range = next(lease);
+                if (range == null) {
+                    out.writeByte(DONE);
+                    out.flush();
+                    return;
+                }
+                out.writeByte(WORK);
+                out.writeLong(range[0]);
+                out.writeLong(range[1]);
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.warning("Worker lost: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            release(lease);
+        }
+    }
+
+    private synchronized void complete(Lease lease, GameHistogram histogram) throws IOException {
+        if (histogram.getGames() != lease.chunkEnd - lease.chunkStart)
+            throw new IOException("Worker played " + histogram.getGames() + " games instead of "
+                    + (lease.chunkEnd - lease.chunkStart));
+        result.merge(histogram);
+        completed += histogram.getGames();
+        lease.chunkStart = lease.chunkEnd = 0;
+        notifyAll();
+    }
+
+    /**
+     * Returns the next chunk for a worker, waiting if there is nothing to hand out but games are still being played.
+     */
+    private synchronized long[] next(Lease lease) throws InterruptedException {
+        while (lease.next >= lease.end) {
+            long[] range = unassigned.poll();
+            if (range != null) {
+                lease.next = range[0];
+                lease.end = range[1];
+            } else if (!steal(lease)) {
+                if (completed >= games)
+                    return null;
+                wait();
+            }
+        }
+        lease.chunkStart = lease.next;
+        lease.chunkEnd = Math.min(lease.next + chunk, lease.end);
+        lease.next = lease.chunkEnd;
+        return new long[]{lease.chunkStart, lease.chunkEnd};
+    }
+
+    /**
+     * Moves the second half of the largest lease to the given one. The owner of the largest lease finds out when it
+     * asks for its next chunk, since chunks that have been handed out are never taken back.
+     */
+    private boolean steal(Lease thief) {
+        Lease victim = null;
+        for (Lease lease : leases) {
+            if (victim == null || lease.end - lease.next > victim.end - victim.next)
+                victim = lease;
+        }
+        // leave the victim at least one chunk, it will have played it before anybody else could
+        if (victim == null || victim.end - victim.next <= chunk)
+            return false;
+        long middle = victim.next + (victim.end - victim.next) / 2;
+        thief.next = middle;
+        thief.end = victim.end;
+        victim.end = middle;
+        return true;
+    }
+
+    private synchronized void release(Lease lease) {
+        leases.remove(lease);
+        if (lease.chunkEnd > lease.chunkStart)
+            unassigned.add(new long[]{lease.chunkStart, lease.chunkEnd});
+        if (lease.end > lease.next)
+            unassigned.add(new long[]{lease.next, lease.end});
+        lease.next = lease.end = lease.chunkStart = lease.chunkEnd = 0;
+        notifyAll();
+    }
+
+    /**
+     * Starts a coordinator and the given number of worker processes on this machine, and prints the results.
+     * Usage: SimulationCoordinator workers games [seed] [maxSteps]
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: SimulationCoordinator workers games [seed] [maxSteps]");
+            System.exit(2);
+        }
+        int workers = Integer.parseInt(args[0]);
+        long games = Long.parseLong(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        long maxSteps = args.length > 3 ? Long.parseLong(args[3]) : 50_000;
+
+        try (SimulationCoordinator coordinator = new SimulationCoordinator(0, seed, games, maxSteps, 1_000)) {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            List<Process> processes = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        SimulationWorker.class.getName(), "localhost", String.valueOf(coordinator.getPort()))
+                        .inheritIO().start());
+            }
+            long start = System.nanoTime();
+            GameHistogram histogram = coordinator.run();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            for (Process process : processes)
+                process.waitFor();
+            System.out.println(histogram);
+            System.out.printf("%d games in %.1f s (%.0f games/s) on %d workers, seed %d%n",
+                    games, seconds, games / seconds, workers, seed);
+        }
+    }
+
+    /**
+     * The games a worker owns: [next, end) still to be handed to it and [chunkStart, chunkEnd) being played.
+     */
+    private static final class Lease {
+        private long next, end, chunkStart, chunkEnd;
+    }
+}
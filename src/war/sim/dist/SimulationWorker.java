@@ -0,0 +1,88 @@
+package war.sim.dist;
+
+import war.Card;
+import war.HeadlessGame;
+import war.sim.Deals;
+import war.sim.GameHistogram;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a worker process of a simulation. It connects to a {@link SimulationCoordinator}, plays the ranges of
+ * games it is given headless by the {@link war.WarModel} rules and sends back a histogram for every range,
+ * until the coordinator has no games left.
+ *
+ * @author Komron Valijonov
+ */
+public class SimulationWorker {
+    private final String host;
+    private final int port;
+
+    /**
+     * Creates a new worker.
+     *
+     * @param host of the coordinator
+     * @param port of the coordinator
+     */
+    public SimulationWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Plays games for the coordinator until there are none left.
+     *
+     * @return number of games played
+     * @throws IOException if the connection fails
+     */
+    public long run() throws IOException {
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setTcpNoDelay(true);
+            if (in.readInt() != SimulationCoordinator.MAGIC)
+                throw new IOException("Not a simulation coordinator");
+            long seed = in.readLong(), maxSteps = in.readLong();
+            GameHistogram histogram = new GameHistogram(in.readInt(), in.readInt());
+            HeadlessGame game = new HeadlessGame();
+            byte[] deck = new byte[Card.STANDARD_DECK_SIZE];
+            long played = 0;
+
+            while (true) {
+                out.writeByte(SimulationCoordinator.RESULT);
+                histogram.write(out);
+                out.flush();
+                int type = in.readByte();
+                if (type == SimulationCoordinator.DONE)
+                    return played;
+                if (type != SimulationCoordinator.WORK)
+                    throw new IOException("Unexpected message from coordinator");
+                long from = in.readLong(), to = in.readLong();
+
+                histogram = GameHistogram.like(histogram);
+                for (long g = from; g < to; g++) {
+                    Deals.deal(seed, g, deck);
+                    game.deal(deck, 0);
+                    game.playOut(maxSteps);
+                    histogram.add(game);
+                }
+                played += to - from;
+            }
+        }
+    }
+
+    /**
+     * Runs a worker. Usage: SimulationWorker host port
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SimulationWorker host port");
+            System.exit(2);
+        }
+        new SimulationWorker(args[0], Integer.parseInt(args[1])).run();
+    }
+}
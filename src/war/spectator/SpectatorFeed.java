@@ -0,0 +1,131 @@
+package war.spectator;
+
+import war.event.TurnEvent;
+import war.event.TurnEventHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the live feed of one game for spectators, fed by the game's {@link war.event.TurnEventBus}.
+ * Every event is encoded once as a small Server-Sent Events message (the type, the cards drawn, the winner and the
+ * pool size) and the same bytes are queued for every subscriber.
+ * <p>
+ * Subscribers have bounded queues and the game never waits for them. When a subscriber's queue is full it is
+ * emptied and replaced by a snapshot of the whole table, so a slow spectator skips ahead instead of falling further
+ * behind. New subscribers start with a snapshot too.
+ *
+ * @author Komron Valijonov
+ */
+public class SpectatorFeed implements TurnEventHandler {
+    private final int queueCapacity;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // what a spectator sees, guarded by this
+    private long sequence = -1;
+    private int card1 = TurnEvent.NO_CARD, card2 = TurnEvent.NO_CARD, winner = TurnEvent.NO_WINNER;
+    private int cardsLeft1, cardsLeft2, poolSize;
+    private boolean war, gameOver;
+    private byte[] snapshot;  // encoded snapshot of the state above, null until needed
+
+    /**
+     * Creates a new feed.
+     *
+     * @param queueCapacity messages a subscriber may fall behind before it gets a snapshot instead
+     */
+    public SpectatorFeed(int queueCapacity) {
+        if (queueCapacity < 2)
+            throw new IllegalArgumentException("Queue capacity must be at least 2");
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Adds a subscriber, which starts with a snapshot of the table.
+     *
+     * @return subscriber to take messages from
+     */
+    public Subscriber subscribe() {
+        Subscriber subscriber = new Subscriber(this, queueCapacity);
+        // queue the snapshot before the subscriber can see any event, so no event gets in between
+        synchronized (this) {
+            subscriber.offer(snapshot());
+            subscribers.add(subscriber);
+        }
+        return subscriber;
+    }
+
+    void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Returns the number of subscribers.
+     *
+     * @return subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public synchronized void onEvent(TurnEvent event, long sequence, boolean endOfBatch) {
+        // queueing never blocks, so holding the lock keeps subscribe() from slipping in between
+        update(event, sequence);
+        byte[] delta = encode(event, sequence);
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(delta))
+                subscriber.skipTo(snapshot());
+        }
+    }
+
+    private void update(TurnEvent event, long sequence) {
+        this.sequence = sequence;
+        switch (event.getType()) {
+            case GAME_START:
+                card1 = card2 = TurnEvent.NO_CARD;
+                winner = TurnEvent.NO_WINNER;
+                war = gameOver = false;
+                break;
+            case TURN_START:
+                card1 = event.getCard(true);
+                card2 = event.getCard(false);
+                break;
+            case WAR_START:
+                war = true;
+                break;
+            case WAR_END:
+                war = false;
+                break;
+            case TURN_END:
+            case GAME_OVER:
+                winner = event.getWinner();
+                gameOver = event.getType() == TurnEvent.Type.GAME_OVER;
+                break;
+            default:
+                break;
+        }
+        cardsLeft1 = event.getCardsLeft(true);
+        cardsLeft2 = event.getCardsLeft(false);
+        poolSize = event.getPoolSize();
+        snapshot = null;
+    }
+
+    private static byte[] encode(TurnEvent event, long sequence) {
+        String message = "id: " + sequence + "\nevent: delta\ndata: {\"type\":\"" + event.getType()
+                + "\",\"card1\":" + event.getCard(true) + ",\"card2\":" + event.getCard(false)
+                + ",\"winner\":" + event.getWinner() + ",\"pool\":" + event.getPoolSize() + "}\n\n";
+        return message.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] snapshot() {
+        if (snapshot == null) {
+            String message = "id: " + sequence + "\nevent: snapshot\ndata: {\"card1\":" + card1 + ",\"card2\":" + card2
+                    + ",\"winner\":" + winner + ",\"cardsLeft1\":" + cardsLeft1 + ",\"cardsLeft2\":" + cardsLeft2
+                    + ",\"pool\":" + poolSize + ",\"war\":" + war + ",\"gameOver\":" + gameOver + "}\n\n";
+            snapshot = message.getBytes(StandardCharsets.UTF_8);
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,122 @@
+package war.spectator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents an HTTP server streaming live games to spectators as Server-Sent Events.
+ * A browser watches a game with <code>new EventSource("http://host:port/games/{id}/events")</code> and gets a
+ * "snapshot" event followed by a "delta" event for everything that happens (see {@link SpectatorFeed}).
+ *
+ * @author Komron Valijonov
+ */
+public class SpectatorServer implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(SpectatorServer.class.getName());
+    private static final String PREFIX = "/games/", SUFFIX = "/events";
+    private static final long HEARTBEAT_SECONDS = 15;  // comment sent when idle, to notice spectators who left
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, SpectatorFeed> games = new ConcurrentHashMap<>();
+
+    /**
+     * Creates and starts a server.
+     *
+     * @param port to listen on, 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public SpectatorServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        // every spectator keeps a thread while watching
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "war-spectator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(PREFIX, this::handle);
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Makes a game available to spectators.
+     *
+     * @param id   of the game, used in the URL
+     * @param feed of the game
+     */
+    public void addGame(String id, SpectatorFeed feed) {
+        games.put(id, feed);
+    }
+
+    /**
+     * Stops showing a game. Spectators already watching keep their connection until they leave.
+     *
+     * @param id of the game
+     */
+    public void removeGame(String id) {
+        games.remove(id);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            SpectatorFeed feed = path.endsWith(SUFFIX)
+                    ? games.get(path.substring(PREFIX.length(), path.length() - SUFFIX.length())) : null;
+            if (feed == null || !exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            stream(feed, exchange.getResponseBody());
+        }
+    }
+
+    private void stream(SpectatorFeed feed, OutputStream out) {
+        try (Subscriber subscriber = feed.subscribe()) {
+            while (true) {
+                byte[] message = subscriber.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                out.write(message == null ? HEARTBEAT : message);
+                // send whatever else is queued before flushing
+                while ((message = subscriber.poll(0, TimeUnit.SECONDS)) != null)
+                    out.write(message);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // spectator left
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.warning(e.toString());
+        }
+    }
+}
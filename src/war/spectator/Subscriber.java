@@ -0,0 +1,65 @@
+package war.spectator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents one spectator of a {@link SpectatorFeed}: a bounded queue of encoded messages, filled by the feed and
+ * emptied by whatever sends them to the spectator. Messages are shared between subscribers and must not be changed.
+ *
+ * @author Komron Valijonov
+ */
+public final class Subscriber implements AutoCloseable {
+    private final SpectatorFeed feed;
+    private final BlockingQueue<byte[]> queue;
+    private volatile long skipped;  // times the subscriber fell behind and got a snapshot
+
+    Subscriber(SpectatorFeed feed, int capacity) {
+        this.feed = feed;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    boolean offer(byte[] message) {
+        return queue.offer(message);
+    }
+
+    /**
+     * Drops everything queued and queues a snapshot instead. Only called by the feed's handler thread.
+     */
+    void skipTo(byte[] snapshot) {
+        queue.clear();
+        queue.offer(snapshot);
+        skipped++;
+    }
+
+    /**
+     * Returns the next message, waiting at most the given time for one.
+     *
+     * @param timeout most time to wait
+     * @param unit    of timeout
+     * @return message, or null if there was none in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public byte[] poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Returns the number of times this subscriber fell behind and skipped to a snapshot.
+     *
+     * @return times skipped
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Stops receiving messages.
+     */
+    @Override
+    public void close() {
+        feed.unsubscribe(this);
+    }
+}
@@ -0,0 +1,212 @@
+package war.tournament;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the standings of all players, backed by an append-only log of match results and renames.
+ * The standings are kept in memory in a map by name and a sorted set by rank, so recording a result costs O(log n).
+ * Opening a leaderboard replays the log; a record that was only partly written when the program stopped is dropped.
+ * <p>
+ * Every record is its length, its contents and a CRC32C of the contents. Results are {@link #RESULT}, both names and
+ * the outcome for the first player (1, 0 or -1); renames are {@link #RENAME}, the old and the new name.
+ *
+ * @author Komron Valijonov
+ */
+public class Leaderboard implements Closeable {
+    private static final Logger logger = Logger.getLogger(Leaderboard.class.getName());
+    private static final byte RESULT = 1, RENAME = 2;
+    private static final int MIN_RECORD = 6;  // type, two empty names, result
+    private static final int MAX_RECORD = 1 << 18;
+
+    private final FileChannel log;
+    private final DataOutputStream out;
+    private final Map<String, Standing> byName = new HashMap<>();
+    private final TreeSet<Standing> ranking = new TreeSet<>(Standing.ORDER);
+
+    /**
+     * Opens a leaderboard, rebuilding the standings from its log if it exists.
+     *
+     * @param file log file
+     * @throws IOException if the log cannot be read or opened for appending
+     */
+    public Leaderboard(Path file) throws IOException {
+        log = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valid = replay();
+        if (valid < log.size()) {
+            logger.warning("Dropping " + (log.size() - valid) + " bytes of an incomplete record from " + file);
+            log.truncate(valid);
+        }
+        log.position(valid);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(log)));
+    }
+
+    /**
+     * Records the result of a match.
+     *
+     * @param player1 name of the first player
+     * @param player2 name of the second player
+     * @param result  1 if the first player won, -1 if the second did, 0 for a draw
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void record(String player1, String player2, int result) throws IOException {
+        append(RESULT, player1, player2, Integer.signum(result));
+        apply(player1, player2, Integer.signum(result));
+    }
+
+    /**
+     * Records that a player was renamed (see {@link war.Player#setName}), keeping their standing.
+     *
+     * @param oldName current name
+     * @param newName new name, not on the leaderboard yet
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void rename(String oldName, String newName) throws IOException {
+        if (byName.containsKey(newName))
+            throw new IllegalArgumentException(newName + " is already on the leaderboard");
+        append(RENAME, oldName, newName, 0);
+        applyRename(oldName, newName);
+    }
+
+    /**
+     * Writes buffered records to the log and forces them to disk.
+     *
+     * @throws IOException if writing fails
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+        log.force(false);
+    }
+
+    /**
+     * Returns the standing of a player.
+     *
+     * @param name of player
+     * @return copy of the standing, null if the player has not played
+     */
+    public synchronized Standing getStanding(String name) {
+        Standing standing = byName.get(name);
+        return standing == null ? null : new Standing(standing);
+    }
+
+    /**
+     * Returns the players in the first places.
+     *
+     * @param count number of places
+     * @return copies of the standings, first place first
+     */
+    public synchronized List<Standing> getTop(int count) {
+        List<Standing> top = new ArrayList<>(Math.min(count, ranking.size()));
+        for (Standing standing : ranking) {
+            if (top.size() == count)
+                break;
+            top.add(new Standing(standing));
+        }
+        return top;
+    }
+
+    /**
+     * Returns the number of players on the leaderboard.
+     *
+     * @return players
+     */
+    public synchronized int size() {
+        return byName.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            log.close();
+        }
+    }
+
+    private void append(byte type, String name1, String name2, int result) throws IOException {
+        byte[] a = name1.getBytes(StandardCharsets.UTF_8), b = name2.getBytes(StandardCharsets.UTF_8);
+        if (a.length > 0xffff || b.length > 0xffff)
+            throw new IllegalArgumentException("Name too long");
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 + a.length + 2 + b.length + 1);
+        record.put(type).putShort((short) a.length).put(a).putShort((short) b.length).put(b).put((byte) result);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array());
+        out.writeInt(record.capacity());
+        out.write(record.array());
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Applies all complete records of the log and returns where the last one ends.
+     */
+    private long replay() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(log.position(0))));
+        long valid = 0;
+        try {
+            while (true) {
+                int length = in.readInt();
+                if (length < MIN_RECORD || length > MAX_RECORD)
+                    break;
+                byte[] record = new byte[length];
+                in.readFully(record);
+                CRC32C crc = new CRC32C();
+                crc.update(record);
+                if (in.readInt() != (int) crc.getValue())
+                    break;
+
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                byte type = buffer.get();
+                String name1 = readName(buffer), name2 = readName(buffer);
+                int result = buffer.get();
+                if (type == RESULT)
+                    apply(name1, name2, result);
+                else if (type == RENAME)
+                    applyRename(name1, name2);
+                valid += 4 + length + 4;
+            }
+        } catch (EOFException | BufferUnderflowException e) {
+            // incomplete last record
+        }
+        return valid;
+    }
+
+    private static String readName(ByteBuffer buffer) {
+        byte[] name = new byte[buffer.getShort() & 0xffff];
+        buffer.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private void apply(String player1, String player2, int result) {
+        update(player1, result);
+        update(player2, -result);
+    }
+
+    private void update(String name, int result) {
+        // a standing's place in the ranking depends on its score, so take it out while it changes
+        Standing standing = byName.computeIfAbsent(name, Standing::new);
+        ranking.remove(standing);
+        standing.add(result);
+        ranking.add(standing);
+    }
+
+    private void applyRename(String oldName, String newName) {
+        Standing standing = byName.remove(oldName);
+        if (standing == null)
+            return;
+        ranking.remove(standing);
+        standing.setName(newName);
+        byName.put(newName, standing);
+        ranking.add(standing);
+    }
+}
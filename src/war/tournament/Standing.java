@@ -0,0 +1,105 @@
+package war.tournament;
+
+import java.util.Comparator;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents the record of one player on a {@link Leaderboard}. A win is worth two points and a draw
+ * (a game that never ended) one, so points are always whole numbers.
+ *
+ * @author Komron Valijonov
+ */
+public final class Standing {
+    /**
+     * Orders standings from first to last place: most points, then most wins, then by name.
+     */
+    static final Comparator<Standing> ORDER = Comparator.comparingLong((Standing s) -> -s.getPoints())
+            .thenComparingLong(s -> -s.wins)
+            .thenComparing(s -> s.name);
+
+    private String name;
+    private long wins, losses, draws;
+
+    Standing(String name) {
+        this.name = name;
+    }
+
+    Standing(Standing other) {
+        this.name = other.name;
+        this.wins = other.wins;
+        this.losses = other.losses;
+        this.draws = other.draws;
+    }
+
+    void add(int result) {
+        if (result > 0)
+            wins++;
+        else if (result < 0)
+            losses++;
+        else
+            draws++;
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the player.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of matches won.
+     *
+     * @return wins
+     */
+    public long getWins() {
+        return wins;
+    }
+
+    /**
+     * Returns the number of matches lost.
+     *
+     * @return losses
+     */
+    public long getLosses() {
+        return losses;
+    }
+
+    /**
+     * Returns the number of matches drawn.
+     *
+     * @return draws
+     */
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Returns the number of matches played.
+     *
+     * @return matches played
+     */
+    public long getPlayed() {
+        return wins + losses + draws;
+    }
+
+    /**
+     * Returns the points of the player.
+     *
+     * @return points
+     */
+    public long getPoints() {
+        return 2 * wins + draws;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-20s %6d pts %6d W %6d L %6d D", name, getPoints(), wins, losses, draws);
+    }
+}
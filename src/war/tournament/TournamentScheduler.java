@@ -0,0 +1,147 @@
+package war.tournament;
+
+import war.Card;
+import war.HeadlessGame;
+import war.sim.Deals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <strong>Final Project</strong><br>
+ * Represents a scheduler of tournaments between named players. Matches are games of "War" played headless by the
+ * {@link war.WarModel} rules on a thread pool, and every result goes to a {@link Leaderboard}.
+ * <p>
+ * Every match is given a number in the order it is scheduled and is dealt from the scheduler's seed and that number
+ * (see {@link Deals}), so a tournament always has the same results, however the threads pick up the matches.
+ * A game that hits the step limit is a draw.
+ *
+ * @author Komron Valijonov
+ */
+public class TournamentScheduler implements AutoCloseable {
+    private static final int MAX_REPLAYS = 10;  // drawn bracket matches are replayed this many times at most
+
+    private final Leaderboard leaderboard;
+    private final ExecutorService executor;
+    private final long seed, maxSteps;
+    private final ThreadLocal<HeadlessGame> games = ThreadLocal.withInitial(HeadlessGame::new);
+    private final ThreadLocal<byte[]> decks = ThreadLocal.withInitial(() -> new byte[Card.STANDARD_DECK_SIZE]);
+    private long matches;  // matches scheduled so far
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param leaderboard to record results on
+     * @param threads     number of threads to play matches on
+     * @param seed        for the deals
+     * @param maxSteps    most steps per game
+     */
+    public TournamentScheduler(Leaderboard leaderboard, int threads, long seed, long maxSteps) {
+        this.leaderboard = leaderboard;
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "war-tournament");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.seed = seed;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Plays a round robin: every player plays every other player the given number of times,
+     * taking turns at being player 1.
+     *
+     * @param players      names of players
+     * @param gamesPerPair games each pair plays
+     * @throws IOException          if a result cannot be recorded
+     * @throws InterruptedException if interrupted while waiting for the matches
+     */
+    public void roundRobin(List<String> players, int gamesPerPair) throws IOException, InterruptedException {
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < players.size(); i++) {
+            for (int j = i + 1; j < players.size(); j++) {
+                for (int g = 0; g < gamesPerPair; g++) {
+                    String first = g % 2 == 0 ? players.get(i) : players.get(j);
+                    String second = g % 2 == 0 ? players.get(j) : players.get(i);
+                    results.add(schedule(first, second));
+                }
+            }
+        }
+        for (Future<Integer> result : results)
+            await(result);
+        leaderboard.flush();
+    }
+
+    /**
+     * Plays a single elimination bracket. Players are paired in the order given (first with second, and so on);
+     * with an odd number of players the last one goes through. A drawn match is replayed, and if it is drawn every
+     * time the player listed first goes through.
+     *
+     * @param players names of players, in seeding order
+     * @return name of the champion
+     * @throws IOException          if a result cannot be recorded
+     * @throws InterruptedException if interrupted while waiting for the matches
+     */
+    public String bracket(List<String> players) throws IOException, InterruptedException {
+        if (players.isEmpty())
+            throw new IllegalArgumentException("No players");
+        List<String> round = new ArrayList<>(players);
+        while (round.size() > 1) {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i + 1 < round.size(); i += 2)
+                results.add(schedule(round.get(i), round.get(i + 1)));
+
+            List<String> next = new ArrayList<>((round.size() + 1) / 2);
+            for (int m = 0; m < results.size(); m++) {
+                String first = round.get(2 * m), second = round.get(2 * m + 1);
+                int result = await(results.get(m));
+                for (int replay = 0; result == 0 && replay < MAX_REPLAYS; replay++)
+                    result = await(schedule(first, second));
+                next.add(result >= 0 ? first : second);
+            }
+            if (round.size() % 2 == 1)
+                next.add(round.get(round.size() - 1));
+            round = next;
+        }
+        leaderboard.flush();
+        return round.get(0);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private synchronized Future<Integer> schedule(String player1, String player2) {
+        long match = matches++;
+        return executor.submit(() -> {
+            int result = play(match);
+            leaderboard.record(player1, player2, result);
+            return result;
+        });
+    }
+
+    private int play(long match) {
+        HeadlessGame game = games.get();
+        byte[] deck = decks.get();
+        Deals.deal(seed, match, deck);
+        game.deal(deck, 0);
+        int winner = game.playOut(maxSteps);
+        return winner == 1 ? 1 : winner == 2 ? -1 : 0;
+    }
+
+    private static int await(Future<Integer> result) throws IOException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException("Match failed", e.getCause());
+        }
+    }
+}